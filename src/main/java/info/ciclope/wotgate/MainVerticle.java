@@ -1,73 +1,69 @@
 package info.ciclope.wotgate;
 
 import com.google.inject.Guice;
-import com.google.inject.Inject;
 import com.google.inject.Injector;
+import info.ciclope.wotgate.codec.MessageCodecs;
 import info.ciclope.wotgate.di.MainModule;
 import info.ciclope.wotgate.http.HttpServer;
-import info.ciclope.wotgate.thing.ThingConfiguration;
-import info.ciclope.wotgate.thing.camera.CameraInfo;
-import info.ciclope.wotgate.thing.camera.CameraThing;
-import info.ciclope.wotgate.thing.dome.DomeInfo;
-import info.ciclope.wotgate.thing.dome.DomeThing;
-import info.ciclope.wotgate.thing.gatekeeper.GateKeeperInfo;
-import info.ciclope.wotgate.thing.gatekeeper.GateKeeperThing;
-import info.ciclope.wotgate.thing.mount.MountInfo;
-import info.ciclope.wotgate.thing.mount.MountThing;
-import info.ciclope.wotgate.thing.weatherstation.WeatherStationInfo;
-import info.ciclope.wotgate.thing.weatherstation.WeatherStationThing;
+import info.ciclope.wotgate.thing.ThingRegistry;
 import io.vertx.core.*;
-
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import io.vertx.core.json.JsonArray;
 
 public class MainVerticle extends AbstractVerticle {
+    private static final String ROLES_CONFIGURATION_KEY = "node.roles";
+    private static final String HTTP_ROLE = "http";
 
-    private Map<String, String> verticlesDeployed;
     private Injector injector;
-
-    @Inject
+    private ThingRegistry thingRegistry;
     private HttpServer httpServer;
 
     @Override
     public void init(Vertx vertx, Context context) {
         super.init(vertx, context);
-        verticlesDeployed = new HashMap<>();
+        MessageCodecs.register(vertx.eventBus());
         injector = Guice.createInjector(new MainModule(this));
-        injector.injectMembers(this);
+        thingRegistry = new ThingRegistry(vertx, injector, config());
     }
 
+    /**
+     * Starts the HTTP server and the things in parallel. The gateway starts even if some thing fails to start.
+     */
     @Override
     public void start(Future<Void> future) {
-        httpServer.startHttpServer(event -> {
-            if (event.succeeded()) {
-                Future<Void> gatekeeperFuture = Future.future();
-                Future<Void> weatherStationFuture = Future.future();
-                Future<Void> domeFuture = Future.future();
-                Future<Void> mountFuture = Future.future();
-                Future<Void> cameraFuture = Future.future();
+        Future<HttpServer> httpServerFuture = Future.future();
+        Future<Void> thingsFuture = Future.future();
 
-                insertGatekeeperThing(gatekeeperFuture);
-                insertWeatherStationThing(weatherStationFuture);
-                insertDomeThing(domeFuture);
-                insertMountThing(mountFuture);
-                insertCameraThing(cameraFuture);
+        startHttpServer(httpServerFuture);
+        thingRegistry.start(this::hasRole, hasRole(HTTP_ROLE), thingsFuture);
 
-                CompositeFuture.all(Arrays.asList(weatherStationFuture, gatekeeperFuture, domeFuture, mountFuture, cameraFuture))
-                        .setHandler(allCompleted -> {
-                            if (allCompleted.succeeded()) {
-                                future.complete();
-                            } else {
-                                future.fail(allCompleted.cause());
-                            }
-                        });
+        CompositeFuture.all(httpServerFuture, thingsFuture).setHandler(allCompleted -> {
+            if (allCompleted.succeeded()) {
+                future.complete();
             } else {
-                future.fail(event.cause());
+                future.fail(allCompleted.cause());
             }
         });
     }
 
+    /**
+     * Starts the HTTP server if this node serves HTTP. In a cluster, every node runs the roles of its "node.roles"
+     * configuration, the HTTP server and the things by their names, and runs all of them by default.
+     */
+    private void startHttpServer(Handler<AsyncResult<HttpServer>> handler) {
+        if (!hasRole(HTTP_ROLE)) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+
+        httpServer = injector.getInstance(HttpServer.class);
+        httpServer.startHttpServer(handler);
+    }
+
+    private boolean hasRole(String role) {
+        JsonArray roles = config().getJsonArray(ROLES_CONFIGURATION_KEY);
+        return roles == null || roles.contains(role);
+    }
+
     @Override
     public void stop(Future<Void> stopFuture) throws Exception {
         if (httpServer != null) {
@@ -75,45 +71,7 @@ public class MainVerticle extends AbstractVerticle {
             });
         }
 
-        verticlesDeployed.forEach((k, v) -> vertx.undeploy(v));
+        thingRegistry.stop();
         super.stop(stopFuture);
     }
-
-    private void insertGatekeeperThing(Handler<AsyncResult<Void>> handler) {
-        Verticle verticle = injector.getInstance(GateKeeperThing.class);
-        insertThing(verticle, GateKeeperInfo.NAME, handler);
-    }
-
-    private void insertWeatherStationThing(Handler<AsyncResult<Void>> handler) {
-        Verticle verticle = injector.getInstance(WeatherStationThing.class);
-        insertThing(verticle, WeatherStationInfo.NAME, handler);
-    }
-
-    private void insertDomeThing(Handler<AsyncResult<Void>> handler) {
-        Verticle verticle = injector.getInstance(DomeThing.class);
-        insertThing(verticle, DomeInfo.NAME, handler);
-    }
-
-    private void insertMountThing(Handler<AsyncResult<Void>> handler) {
-        Verticle verticle = injector.getInstance(MountThing.class);
-        insertThing(verticle, MountInfo.NAME, handler);
-    }
-
-    private void insertCameraThing(Handler<AsyncResult<Void>> handler) {
-        Verticle verticle = injector.getInstance(CameraThing.class);
-        insertThing(verticle, CameraInfo.NAME, handler);
-    }
-
-    private void insertThing(Verticle verticle, String verticleName, Handler<AsyncResult<Void>> handler) {
-        ThingConfiguration thingConfiguration = new ThingConfiguration(verticleName);
-        DeploymentOptions options = new DeploymentOptions().setConfig(thingConfiguration.asJsonObject());
-        vertx.deployVerticle(verticle, options, deployment -> {
-            if (deployment.succeeded()) {
-                verticlesDeployed.put(verticleName, deployment.result());
-                handler.handle(Future.succeededFuture());
-            } else {
-                handler.handle(Future.failedFuture(deployment.cause()));
-            }
-        });
-    }
 }
@@ -0,0 +1,42 @@
+package info.ciclope.wotgate.amqp;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+
+import java.util.function.Predicate;
+
+/**
+ * Execution of a command by a device. It is completed by the reply of the device correlated to the command or,
+ * for devices that only report their status, by the first status showing the command done.
+ */
+public class Actuation {
+    private final String command;
+    private final Predicate<JsonObject> completedBy;
+    private Handler<AsyncResult<Void>> completionHandler;
+
+    public Actuation(String command, Predicate<JsonObject> completedBy) {
+        this.command = command;
+        this.completedBy = completedBy;
+    }
+
+    /**
+     * Handles the completion of the command by the device, or its failure or timeout.
+     */
+    public Actuation completionHandler(Handler<AsyncResult<Void>> completionHandler) {
+        this.completionHandler = completionHandler;
+        return this;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    boolean isCompletedBy(JsonObject status) {
+        return completedBy.test(status);
+    }
+
+    Handler<AsyncResult<Void>> getCompletionHandler() {
+        return completionHandler;
+    }
+}
@@ -0,0 +1,130 @@
+package info.ciclope.wotgate.amqp;
+
+import info.ciclope.wotgate.metrics.DeviceMetrics;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tracks the commands sent to a device until it executes them, recording the time from each command to its execution.
+ * Commands are sent with a correlation ID, matched by the replies of the device, and with no reply they are completed
+ * by the first status showing them done, oldest command first.
+ * <p>
+ * Must be used from the context of its thing.
+ */
+public class ActuationTracker {
+    public static final long ACTUATION_TIMEOUT = 120000; // 2 minutes
+
+    private final Vertx vertx;
+    private final String device;
+    private final DeviceMetrics deviceMetrics;
+    private final Map<String, Pending> pending;
+    private final long timerId;
+
+    public ActuationTracker(Vertx vertx, String device, DeviceMetrics deviceMetrics) {
+        this.vertx = vertx;
+        this.device = device;
+        this.deviceMetrics = deviceMetrics;
+        this.pending = new LinkedHashMap<>();
+        this.timerId = vertx.setPeriodic(1000, timer -> failExpired());
+
+        deviceMetrics.pendingActuations(device, pending::size);
+    }
+
+    /**
+     * Starts tracking a command, returning the correlation ID to send it with.
+     */
+    public String start(Actuation actuation) {
+        String correlationId = UUID.randomUUID().toString();
+        pending.put(correlationId, new Pending(actuation));
+        return correlationId;
+    }
+
+    /**
+     * Fails a command that could not be sent.
+     */
+    public void cancel(String correlationId, Throwable cause) {
+        Pending command = pending.remove(correlationId);
+        if (command != null) {
+            command.complete("failure", cause);
+        }
+    }
+
+    /**
+     * Completes the command answered by a reply of the device, failed if the reply has an error.
+     */
+    public void replied(String correlationId, JsonObject reply) {
+        Pending command = pending.remove(correlationId);
+        if (command != null) {
+            String error = reply.getString("error");
+            command.complete(error == null ? "success" : "failure", error == null ? null : new Exception(error));
+        }
+    }
+
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Completes the oldest command shown done by a status of the device.
+     */
+    public void status(JsonObject status) {
+        Iterator<Pending> commands = pending.values().iterator();
+        while (commands.hasNext()) {
+            Pending command = commands.next();
+            if (command.actuation.isCompletedBy(status)) {
+                commands.remove();
+                command.complete("success", null);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fails the commands not executed yet, once the thing stops.
+     */
+    public void close(Throwable cause) {
+        vertx.cancelTimer(timerId);
+        pending.values().forEach(command -> command.complete("failure", cause));
+        pending.clear();
+    }
+
+    private void failExpired() {
+        long expiration = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(ACTUATION_TIMEOUT);
+        Iterator<Pending> commands = pending.values().iterator();
+        while (commands.hasNext()) {
+            Pending command = commands.next();
+            if (command.start >= expiration) {
+                // In order of creation, the rest are newer
+                return;
+            }
+            commands.remove();
+            command.complete("timeout", new TimeoutException("Command not executed by " + device + " in time"));
+        }
+    }
+
+    private class Pending {
+        private final Actuation actuation;
+        private final long start;
+
+        private Pending(Actuation actuation) {
+            this.actuation = actuation;
+            this.start = System.nanoTime();
+        }
+
+        private void complete(String outcome, Throwable cause) {
+            deviceMetrics.actuation(device, actuation.getCommand(), outcome, start);
+            if (actuation.getCompletionHandler() != null) {
+                actuation.getCompletionHandler()
+                        .handle(cause == null ? Future.succeededFuture() : Future.failedFuture(cause));
+            }
+        }
+    }
+}
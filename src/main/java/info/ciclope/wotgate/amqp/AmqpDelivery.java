@@ -0,0 +1,39 @@
+package info.ciclope.wotgate.amqp;
+
+import com.rabbitmq.client.Channel;
+
+/**
+ * Message received from the queue of a device, with the correlation ID of the command it answers, if any.
+ */
+public class AmqpDelivery {
+    private final Channel channel;
+    private final long deliveryTag;
+    private final String correlationId;
+    private final byte[] body;
+
+    public AmqpDelivery(Channel channel, long deliveryTag, String correlationId, byte[] body) {
+        this.channel = channel;
+        this.deliveryTag = deliveryTag;
+        this.correlationId = correlationId;
+        this.body = body;
+    }
+
+    /**
+     * Channel the message was delivered on, to be acknowledged on.
+     */
+    public Channel getChannel() {
+        return channel;
+    }
+
+    public long getDeliveryTag() {
+        return deliveryTag;
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+}
@@ -0,0 +1,100 @@
+package info.ciclope.wotgate.amqp;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.rabbitmq.client.*;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Owns the only AMQP connection of the gateway, shared by all the devices behind RabbitMQ. Each device gets its own
+ * channel in confirm mode, with its topology declared once when the channel is opened.
+ * <p>
+ * The connection is not recovered by the client library: when it is lost, every channel reports it and its device
+ * opens a new channel, the first one opening a new connection for all of them and each one declaring its topology
+ * again.
+ */
+@Singleton
+public class AmqpManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AmqpManager.class);
+
+    private final Vertx vertx;
+    private final ConnectionFactory connectionFactory;
+    private Connection connection;
+
+    @Inject
+    public AmqpManager(Vertx vertx, ConnectionFactory connectionFactory) {
+        this.vertx = vertx;
+        this.connectionFactory = connectionFactory;
+        connectionFactory.setAutomaticRecoveryEnabled(false);
+        connectionFactory.setTopologyRecoveryEnabled(false);
+    }
+
+    /**
+     * Opens a channel for a device, declaring its topology and consuming its queue with manual acknowledgements and up
+     * to the given number of unacknowledged messages. The deliveries and the loss of the channel are handled in the
+     * context of the caller.
+     */
+    public void openChannel(AmqpTopology topology, int prefetch, Handler<AmqpDelivery> deliveryHandler,
+                            Handler<Throwable> lostHandler, Handler<AsyncResult<Channel>> handler) {
+        Context context = vertx.getOrCreateContext();
+        vertx.executeBlocking(future -> {
+            try {
+                Channel channel = getConnection().createChannel();
+                topology.declare(channel);
+                channel.confirmSelect();
+                channel.basicQos(prefetch);
+                channel.basicConsume(topology.getQueue(), false, new DefaultConsumer(channel) {
+                    @Override
+                    public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties,
+                                               byte[] body) {
+                        AmqpDelivery delivery = new AmqpDelivery(channel, envelope.getDeliveryTag(),
+                                properties.getCorrelationId(), body);
+                        context.runOnContext(v -> deliveryHandler.handle(delivery));
+                    }
+                });
+                channel.addShutdownListener(cause -> {
+                    if (!cause.isInitiatedByApplication()) {
+                        context.runOnContext(v -> lostHandler.handle(cause));
+                    }
+                });
+                future.complete(channel);
+            } catch (IOException | TimeoutException e) {
+                future.fail(e);
+            }
+        }, false, handler);
+    }
+
+    /**
+     * Closes a channel of a device, without reporting it as lost.
+     */
+    public void closeChannel(Channel channel) {
+        vertx.executeBlocking(future -> {
+            try {
+                if (channel.isOpen()) {
+                    channel.close();
+                }
+                future.complete();
+            } catch (IOException | TimeoutException e) {
+                future.fail(e);
+            }
+        }, false, closed -> {
+        });
+    }
+
+    private synchronized Connection getConnection() throws IOException, TimeoutException {
+        if (connection == null || !connection.isOpen()) {
+            connection = connectionFactory.newConnection("wotgate");
+            LOGGER.info("Connected to RabbitMQ at " + connectionFactory.getHost());
+        }
+
+        return connection;
+    }
+}
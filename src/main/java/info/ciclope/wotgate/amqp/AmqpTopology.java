@@ -0,0 +1,40 @@
+package info.ciclope.wotgate.amqp;
+
+import com.rabbitmq.client.Channel;
+
+import java.io.IOException;
+
+/**
+ * Exchange and queue of a device: commands are published to the exchange and the device information is consumed from
+ * the queue, bound to the exchange with its own routing key.
+ */
+public class AmqpTopology {
+    private final String exchange;
+    private final String exchangeType;
+    private final String queue;
+    private final String bindingKey;
+
+    public AmqpTopology(String exchange, String exchangeType, String queue, String bindingKey) {
+        this.exchange = exchange;
+        this.exchangeType = exchangeType;
+        this.queue = queue;
+        this.bindingKey = bindingKey;
+    }
+
+    public String getExchange() {
+        return exchange;
+    }
+
+    public String getQueue() {
+        return queue;
+    }
+
+    /**
+     * Declares the exchange, the queue, exclusive to the connection, and their binding.
+     */
+    void declare(Channel channel) throws IOException {
+        channel.exchangeDeclare(exchange, exchangeType, false, false, null);
+        channel.queueDeclare(queue, false, true, false, null);
+        channel.queueBind(queue, exchange, bindingKey);
+    }
+}
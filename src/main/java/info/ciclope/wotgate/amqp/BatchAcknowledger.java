@@ -0,0 +1,89 @@
+package info.ciclope.wotgate.amqp;
+
+import com.rabbitmq.client.Channel;
+import io.vertx.core.Vertx;
+
+import java.io.IOException;
+
+/**
+ * Acknowledges the messages consumed from a channel in batches, with a single acknowledgement of every message up to
+ * the last one processed. A batch is acknowledged once full or a short interval after its first message, so the
+ * broker keeps delivering within the prefetch window of the channel.
+ * <p>
+ * Acknowledgements are sent in order, in the ordered blocking tasks of the context shared with the publications on the
+ * channel, as a multiple acknowledgement of a tag already released by a later one closes the channel. Must be used
+ * from the context of its thing.
+ */
+public class BatchAcknowledger {
+    private static final long ACK_INTERVAL = 100; // 100 milliseconds
+
+    private final Vertx vertx;
+    private final Channel channel;
+    private final int batchSize;
+    private long lastDeliveryTag;
+    private long acknowledgedTag;
+    private int unacknowledged;
+    private long timerId;
+    private boolean closed;
+
+    public BatchAcknowledger(Vertx vertx, Channel channel, int batchSize) {
+        this.vertx = vertx;
+        this.channel = channel;
+        this.batchSize = batchSize;
+        this.timerId = -1;
+    }
+
+    /**
+     * Records a delivery as processed, acknowledging it with the rest of its batch.
+     */
+    public void processed(long deliveryTag) {
+        if (closed) {
+            return;
+        }
+
+        lastDeliveryTag = deliveryTag;
+        unacknowledged++;
+        if (unacknowledged >= batchSize) {
+            acknowledge();
+        } else if (timerId == -1) {
+            timerId = vertx.setTimer(ACK_INTERVAL, timer -> {
+                timerId = -1;
+                acknowledge();
+            });
+        }
+    }
+
+    /**
+     * Stops acknowledging, once the channel is closed or lost.
+     */
+    public void close() {
+        closed = true;
+        if (timerId != -1) {
+            vertx.cancelTimer(timerId);
+        }
+    }
+
+    private void acknowledge() {
+        if (timerId != -1) {
+            vertx.cancelTimer(timerId);
+            timerId = -1;
+        }
+        if (closed || unacknowledged == 0 || lastDeliveryTag <= acknowledgedTag) {
+            return;
+        }
+
+        long deliveryTag = lastDeliveryTag;
+        acknowledgedTag = deliveryTag;
+        unacknowledged = 0;
+        vertx.<Void>executeBlocking(future -> {
+            try {
+                channel.basicAck(deliveryTag, true);
+                future.complete();
+            } catch (IOException e) {
+                // The loss of the channel is reported by the channel itself
+                future.fail(e);
+            }
+        }, true, acknowledged -> {
+        });
+    }
+}
@@ -0,0 +1,177 @@
+package info.ciclope.wotgate.amqp;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import info.ciclope.wotgate.metrics.DeviceMetrics;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes to the exchange of a device on a channel in confirm mode, completing each publish once the broker
+ * confirms it. Up to a window of messages wait for their confirmation at once; the messages queued meanwhile are
+ * published together in a single blocking task, and a confirmation of several messages completes all of them.
+ * The tasks are ordered with the acknowledgements of the context, so the channel is never used by two threads at once.
+ * <p>
+ * Must be used from the context of its thing, where the confirmations are handled too.
+ */
+public class ConfirmingPublisher implements ConfirmListener {
+    private static final int WINDOW = 64;
+    private static final long CONFIRM_TIMEOUT = 5000; // 5 seconds
+
+    private final Vertx vertx;
+    private final Context context;
+    private final Channel channel;
+    private final String exchange;
+    private final DeviceMetrics deviceMetrics;
+    private final Deque<Publish> queued;
+    private final NavigableMap<Long, Publish> unconfirmed;
+    private final long timerId;
+    private long nextSequenceNumber;
+    private boolean publishing;
+    private Throwable closedCause;
+
+    /**
+     * @param channel channel in confirm mode without any message published yet
+     */
+    public ConfirmingPublisher(Vertx vertx, Channel channel, String exchange, DeviceMetrics deviceMetrics) {
+        this.vertx = vertx;
+        this.context = vertx.getOrCreateContext();
+        this.channel = channel;
+        this.exchange = exchange;
+        this.deviceMetrics = deviceMetrics;
+        this.queued = new ArrayDeque<>();
+        this.unconfirmed = new TreeMap<>();
+        this.nextSequenceNumber = 1;
+        this.timerId = vertx.setPeriodic(CONFIRM_TIMEOUT / 5, timer -> failExpired());
+
+        deviceMetrics.unconfirmedMessages(exchange, () -> queued.size() + unconfirmed.size());
+        channel.addConfirmListener(this);
+    }
+
+    public void publish(String routingKey, AMQP.BasicProperties properties, byte[] body,
+                        Handler<AsyncResult<Void>> handler) {
+        if (closedCause != null) {
+            handler.handle(Future.failedFuture(closedCause));
+            return;
+        }
+
+        queued.add(new Publish(routingKey, properties, body, handler));
+        publishQueued();
+    }
+
+    /**
+     * Fails the messages not confirmed yet, once the channel is closed or lost.
+     */
+    public void close(Throwable cause) {
+        closedCause = cause;
+        vertx.cancelTimer(timerId);
+        queued.forEach(publish -> publish.complete(false, cause));
+        queued.clear();
+        unconfirmed.values().forEach(publish -> publish.complete(false, cause));
+        unconfirmed.clear();
+    }
+
+    @Override
+    public void handleAck(long deliveryTag, boolean multiple) {
+        context.runOnContext(v -> confirmed(deliveryTag, multiple, true));
+    }
+
+    @Override
+    public void handleNack(long deliveryTag, boolean multiple) {
+        context.runOnContext(v -> confirmed(deliveryTag, multiple, false));
+    }
+
+    private void publishQueued() {
+        if (publishing || queued.isEmpty() || unconfirmed.size() >= WINDOW) {
+            return;
+        }
+
+        // The channel numbers the messages it publishes in confirm mode, so their numbers are known in advance
+        List<Publish> batch = new ArrayList<>();
+        while (!queued.isEmpty() && unconfirmed.size() < WINDOW) {
+            Publish publish = queued.poll();
+            publish.sequenceNumber = nextSequenceNumber++;
+            unconfirmed.put(publish.sequenceNumber, publish);
+            batch.add(publish);
+        }
+
+        publishing = true;
+        deviceMetrics.rabbitBatchPublished(exchange);
+        vertx.<Void>executeBlocking(future -> {
+            try {
+                for (Publish publish : batch) {
+                    channel.basicPublish(exchange, publish.routingKey, publish.properties, publish.body);
+                }
+                future.complete();
+            } catch (IOException e) {
+                future.fail(e);
+            }
+        }, true, published -> {
+            publishing = false;
+            if (published.failed()) {
+                // The channel is broken, the messages not published are never confirmed
+                close(published.cause());
+                return;
+            }
+            publishQueued();
+        });
+    }
+
+    private void confirmed(long deliveryTag, boolean multiple, boolean acknowledged) {
+        NavigableMap<Long, Publish> confirmed = multiple ? unconfirmed.headMap(deliveryTag, true)
+                : unconfirmed.subMap(deliveryTag, true, deliveryTag, true);
+        Throwable cause = acknowledged ? null : new IOException("Message rejected by the broker");
+        confirmed.values().forEach(publish -> publish.complete(acknowledged, cause));
+        confirmed.clear();
+
+        publishQueued();
+    }
+
+    private void failExpired() {
+        long expiration = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(CONFIRM_TIMEOUT);
+        Throwable cause = new IOException("Message not confirmed by the broker in time");
+        unconfirmed.values().removeIf(publish -> {
+            if (publish.start < expiration) {
+                publish.complete(false, cause);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private class Publish {
+        private final String routingKey;
+        private final AMQP.BasicProperties properties;
+        private final byte[] body;
+        private final Handler<AsyncResult<Void>> handler;
+        private final long start;
+        private long sequenceNumber;
+
+        private Publish(String routingKey, AMQP.BasicProperties properties, byte[] body,
+                        Handler<AsyncResult<Void>> handler) {
+            this.routingKey = routingKey;
+            this.properties = properties;
+            this.body = body;
+            this.handler = handler;
+            this.start = System.nanoTime();
+        }
+
+        private void complete(boolean acknowledged, Throwable cause) {
+            deviceMetrics.rabbitConfirmed(exchange, start, acknowledged);
+            handler.handle(acknowledged ? Future.succeededFuture() : Future.failedFuture(cause));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package info.ciclope.wotgate.codec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.EncodeException;
+import io.vertx.core.json.Json;
+
+import java.io.IOException;
+
+/**
+ * Codec of an immutable type. Local deliveries pass the object by reference, without any copy or serialization, and
+ * the wire format, used between the nodes of a cluster, is its JSON.
+ */
+public class JsonMessageCodec<T> implements MessageCodec<T, T> {
+    private final Class<T> type;
+
+    public JsonMessageCodec(Class<T> type) {
+        this.type = type;
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, T object) {
+        byte[] json;
+        try {
+            json = Json.mapper.writeValueAsBytes(object);
+        } catch (JsonProcessingException e) {
+            throw new EncodeException("Failed to encode " + type.getSimpleName() + ": " + e.getMessage());
+        }
+
+        buffer.appendInt(json.length);
+        buffer.appendBytes(json);
+    }
+
+    @Override
+    public T decodeFromWire(int position, Buffer buffer) {
+        int length = buffer.getInt(position);
+        position += 4;
+        try {
+            return Json.mapper.readValue(buffer.getBytes(position, position + length), type);
+        } catch (IOException e) {
+            throw new DecodeException("Failed to decode " + type.getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public T transform(T object) {
+        return object;
+    }
+
+    @Override
+    public String name() {
+        return type.getName();
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+}
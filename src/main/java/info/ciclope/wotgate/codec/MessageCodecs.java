@@ -0,0 +1,29 @@
+package info.ciclope.wotgate.codec;
+
+import info.ciclope.wotgate.thing.HistoryQuery;
+import info.ciclope.wotgate.thing.StatusSnapshot;
+import info.ciclope.wotgate.thing.gatekeeper.model.ReservationList;
+import info.ciclope.wotgate.thing.gatekeeper.model.ReservationQuery;
+import info.ciclope.wotgate.thing.mount.model.MountCommand;
+import io.vertx.core.eventbus.EventBus;
+
+/**
+ * Default codecs of the typed payloads exchanged through the event bus.
+ */
+public class MessageCodecs {
+
+    private MessageCodecs() {
+    }
+
+    public static void register(EventBus eventBus) {
+        eventBus.registerDefaultCodec(StatusSnapshot.class, new StatusSnapshotCodec());
+        registerJsonCodec(eventBus, MountCommand.class);
+        registerJsonCodec(eventBus, ReservationQuery.class);
+        registerJsonCodec(eventBus, ReservationList.class);
+        registerJsonCodec(eventBus, HistoryQuery.class);
+    }
+
+    private static <T> void registerJsonCodec(EventBus eventBus, Class<T> type) {
+        eventBus.registerDefaultCodec(type, new JsonMessageCodec<>(type));
+    }
+}
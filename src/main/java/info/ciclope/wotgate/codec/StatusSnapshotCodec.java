@@ -0,0 +1,51 @@
+package info.ciclope.wotgate.codec;
+
+import info.ciclope.wotgate.thing.StatusSnapshot;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Codec of the status snapshots. Locally they are passed by reference. On the wire they are sent as
+ * {"thingName": ..., "version": ..., "etag": ..., "body": {...}}, with the already serialized body embedded as is.
+ */
+public class StatusSnapshotCodec implements MessageCodec<StatusSnapshot, StatusSnapshot> {
+
+    @Override
+    public void encodeToWire(Buffer buffer, StatusSnapshot snapshot) {
+        Buffer json = Buffer.buffer("{\"thingName\":").appendString(Json.encode(snapshot.getThingName()))
+                .appendString(",\"version\":").appendString(String.valueOf(snapshot.getVersion()))
+                .appendString(",\"etag\":").appendString(Json.encode(snapshot.getEtag()))
+                .appendString(",\"body\":").appendBuffer(snapshot.getBody())
+                .appendString("}");
+
+        buffer.appendInt(json.length());
+        buffer.appendBuffer(json);
+    }
+
+    @Override
+    public StatusSnapshot decodeFromWire(int position, Buffer buffer) {
+        int length = buffer.getInt(position);
+        position += 4;
+        JsonObject json = new JsonObject(buffer.getBuffer(position, position + length));
+
+        return new StatusSnapshot(json.getString("thingName"), json.getLong("version"), json.getString("etag"),
+                Json.encodeToBuffer(json.getValue("body")));
+    }
+
+    @Override
+    public StatusSnapshot transform(StatusSnapshot snapshot) {
+        return snapshot;
+    }
+
+    @Override
+    public String name() {
+        return StatusSnapshot.class.getName();
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+}
@@ -3,40 +3,45 @@ package info.ciclope.wotgate.di;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import com.google.inject.name.Names;
+import com.rabbitmq.client.ConnectionFactory;
+import info.ciclope.wotgate.metrics.MetricsRegistry;
 import info.ciclope.wotgate.storage.DatabaseStorage;
 import info.ciclope.wotgate.storage.SqliteStorage;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.auth.KeyStoreOptions;
 import io.vertx.ext.auth.jwt.JWTAuth;
 import io.vertx.ext.auth.jwt.JWTAuthOptions;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.client.WebClientOptions;
-import io.vertx.rabbitmq.RabbitMQClient;
-import io.vertx.rabbitmq.RabbitMQOptions;
 
 import javax.inject.Named;
 
 public class MainModule extends AbstractModule {
 
     private Vertx vertx;
+    private JsonObject configuration;
 
     public MainModule(AbstractVerticle mainVerticle) {
         this.vertx = mainVerticle.getVertx();
+        this.configuration = mainVerticle.config();
     }
 
     @Override
     protected void configure() {
         bind(Vertx.class).toInstance(vertx);
         bind(EventBus.class).toInstance(vertx.eventBus());
+        bind(JsonObject.class).annotatedWith(Names.named("configuration")).toInstance(configuration);
     }
 
     @Provides
     @Singleton
     @Named("gatekeeper")
-    public DatabaseStorage provideDatabaseStorageGatekeeper() {
-        SqliteStorage storage = new SqliteStorage(vertx);
+    public DatabaseStorage provideDatabaseStorageGatekeeper(MetricsRegistry metricsRegistry) {
+        SqliteStorage storage = new SqliteStorage(vertx, metricsRegistry);
         storage.startDatabaseStorage("gatekeeper");
         return storage;
     }
@@ -44,8 +49,8 @@ public class MainModule extends AbstractModule {
     @Provides
     @Singleton
     @Named("weatherstation")
-    public DatabaseStorage provideDatabaseStorageWeatherStation() {
-        SqliteStorage storage = new SqliteStorage(vertx);
+    public DatabaseStorage provideDatabaseStorageWeatherStation(MetricsRegistry metricsRegistry) {
+        SqliteStorage storage = new SqliteStorage(vertx, metricsRegistry);
         storage.startDatabaseStorage("weatherstation");
         return storage;
     }
@@ -68,7 +73,10 @@ public class MainModule extends AbstractModule {
         // TODO: poner host de la API
         WebClientOptions webClientOptions = new WebClientOptions()
                 .setDefaultHost("ofs.fi.upm.es")
-                .setDefaultPort(5000);
+                .setDefaultPort(5000)
+                // A single persistent connection, reused by every poll while the API keeps it open
+                .setKeepAlive(true)
+                .setMaxPoolSize(1);
 
         return WebClient.create(vertx, webClientOptions);
     }
@@ -86,16 +94,15 @@ public class MainModule extends AbstractModule {
     }
 
     @Provides
-    @Singleton
-    public RabbitMQClient provideRabbitMQClient() {
-        RabbitMQOptions config = new RabbitMQOptions();
-        config.setHost("138.100.9.212")
-                .setPort(5672)
-                .setUser("venus")
-                .setPassword("venuspass")
-                .setAutomaticRecoveryEnabled(true);
-
-        return RabbitMQClient.create(vertx, config);
+    public ConnectionFactory provideAmqpConnectionFactory() {
+        ConnectionFactory connectionFactory = new ConnectionFactory();
+        connectionFactory.setHost("138.100.9.212");
+        connectionFactory.setPort(5672);
+        connectionFactory.setUsername("venus");
+        connectionFactory.setPassword("venuspass");
+        connectionFactory.setConnectionTimeout(5000);
+
+        return connectionFactory;
     }
 
 }
@@ -0,0 +1,269 @@
+package info.ciclope.wotgate.http;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import info.ciclope.wotgate.metrics.Counter;
+import info.ciclope.wotgate.metrics.MetricsRegistry;
+import info.ciclope.wotgate.util.TokenBucket;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.inject.Named;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Admission control of the HTTP requests. Each route group limits its requests with token buckets per client IP and
+ * per JWT subject, and a global cap on the requests in flight sheds load when the gateway is saturated.
+ * <p>
+ * The route groups are read from the "http.admission" configuration, with this format:
+ * <pre>
+ * {
+ *   "maxInFlight": 256,
+ *   "groups": [{
+ *     "name": "security",
+ *     "paths": ["^/login$"],          // Regular expressions, the first group matching the path is used
+ *     "ip": {"capacity": 10, "refillPerSecond": 0.2},
+ *     "subject": {"capacity": 10, "refillPerSecond": 1},
+ *     "inFlight": true                // False for long-lived streams, that don't count as in flight
+ *   }]
+ * }
+ * </pre>
+ */
+@Singleton
+public class AdmissionControlHandler implements Handler<RoutingContext> {
+    private static final String CONFIGURATION_KEY = "http.admission";
+    private static final int DEFAULT_MAX_IN_FLIGHT = 256;
+    private static final long CLEANUP_INTERVAL = 60000; // 1 minute
+    private static final String ROUTE_GROUP_KEY = "admission.routeGroup";
+    private static final String IN_FLIGHT_KEY = "admission.inFlight";
+
+    private final int maxInFlight;
+    private final List<RouteGroup> routeGroups;
+    private final Counter rejected;
+    private int inFlight;
+    private long shedRequests;
+
+    @Inject
+    public AdmissionControlHandler(Vertx vertx, @Named("configuration") JsonObject configuration,
+                                   MetricsRegistry metricsRegistry) {
+        JsonObject admission = configuration.getJsonObject(CONFIGURATION_KEY, getDefaultConfiguration());
+        this.maxInFlight = admission.getInteger("maxInFlight", DEFAULT_MAX_IN_FLIGHT);
+        this.routeGroups = new ArrayList<>();
+        admission.getJsonArray("groups", new JsonArray()).forEach(group -> routeGroups.add(new RouteGroup((JsonObject) group)));
+
+        // Without limits for the paths not covered by the configured groups
+        routeGroups.add(new RouteGroup(new JsonObject().put("name", "default").put("paths", new JsonArray().add(".*"))));
+
+        this.rejected = metricsRegistry.counter("wotgate_http_admission_rejected_total",
+                "HTTP requests rejected by the admission control, by route group and reason.", "group", "reason");
+        metricsRegistry.gauge("wotgate_http_requests_in_flight", "HTTP requests in flight.").labels()
+                .set(() -> inFlight);
+
+        vertx.setPeriodic(CLEANUP_INTERVAL, timer -> removeIdleBuckets());
+    }
+
+    /**
+     * Applies the limits per IP and the in flight cap. Must be routed before any other handler.
+     */
+    @Override
+    public void handle(RoutingContext routingContext) {
+        RouteGroup group = getRouteGroup(routingContext.normalisedPath());
+        routingContext.put(ROUTE_GROUP_KEY, group);
+
+        long now = System.nanoTime();
+        String address = routingContext.request().remoteAddress().host();
+        long waitTime = group.consume(group.ipBuckets, group.ipLimit, address, now);
+        if (waitTime > 0) {
+            group.ipRejected++;
+            rejected.labels(group.name, "ip").increment();
+            reject(routingContext, HttpStatus.TOO_MANY_REQUESTS, waitTime);
+            return;
+        }
+
+        if (group.inFlight) {
+            if (inFlight >= maxInFlight) {
+                shedRequests++;
+                rejected.labels(group.name, "inFlight").increment();
+                reject(routingContext, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1));
+                return;
+            }
+
+            inFlight++;
+            routingContext.put(IN_FLIGHT_KEY, true);
+            // Called when the response ends or the connection is closed
+            routingContext.response().endHandler(ended -> release(routingContext));
+        }
+
+        routingContext.next();
+    }
+
+    /**
+     * Applies the limits per JWT subject. Must be routed after the authentication handler.
+     */
+    public void handleSubject(RoutingContext routingContext) {
+        RouteGroup group = routingContext.get(ROUTE_GROUP_KEY);
+        User user = routingContext.user();
+        if (group != null && user != null) {
+            String subject = user.principal().getString("sub");
+            long waitTime = group.consume(group.subjectBuckets, group.subjectLimit, subject, System.nanoTime());
+            if (waitTime > 0) {
+                group.subjectRejected++;
+                rejected.labels(group.name, "subject").increment();
+                reject(routingContext, HttpStatus.TOO_MANY_REQUESTS, waitTime);
+                return;
+            }
+        }
+
+        routingContext.next();
+    }
+
+    /**
+     * Applies the limits per IP and per JWT subject of the route group of a path to an operation run within another
+     * request, such as every operation of a batch. Returns 0 if admitted, or the nanoseconds to wait otherwise.
+     */
+    public long admitOperation(String path, String address, String subject) {
+        RouteGroup group = getRouteGroup(path);
+        long now = System.nanoTime();
+        long waitTime = group.consume(group.ipBuckets, group.ipLimit, address, now);
+        if (waitTime > 0) {
+            group.ipRejected++;
+            rejected.labels(group.name, "ip").increment();
+            return waitTime;
+        }
+
+        waitTime = group.consume(group.subjectBuckets, group.subjectLimit, subject, now);
+        if (waitTime > 0) {
+            group.subjectRejected++;
+            rejected.labels(group.name, "subject").increment();
+        }
+
+        return waitTime;
+    }
+
+    public void getStatistics(RoutingContext routingContext) {
+        JsonObject groups = new JsonObject();
+        routeGroups.forEach(group -> groups.put(group.name, new JsonObject()
+                .put("rejectedByIp", group.ipRejected)
+                .put("rejectedBySubject", group.subjectRejected)));
+
+        JsonObject statistics = new JsonObject()
+                .put("inFlight", inFlight)
+                .put("maxInFlight", maxInFlight)
+                .put("shed", shedRequests)
+                .put("groups", groups);
+
+        HttpServerResponse response = routingContext.response();
+        response.putHeader(HttpHeader.CONTENT_TYPE, HttpHeader.CONTENT_TYPE_JSON);
+        response.end(statistics.encode());
+    }
+
+    private RouteGroup getRouteGroup(String path) {
+        for (RouteGroup group : routeGroups) {
+            if (group.matches(path)) {
+                return group;
+            }
+        }
+
+        return routeGroups.get(routeGroups.size() - 1);
+    }
+
+    private void reject(RoutingContext routingContext, int statusCode, long waitTime) {
+        long retryAfter = Math.max(1, (long) Math.ceil(waitTime / (double) TimeUnit.SECONDS.toNanos(1)));
+
+        HttpServerResponse response = routingContext.response();
+        response.setStatusCode(statusCode);
+        response.putHeader(HttpHeader.RETRY_AFTER, String.valueOf(retryAfter));
+        response.end();
+    }
+
+    private void release(RoutingContext routingContext) {
+        if (routingContext.remove(IN_FLIGHT_KEY) != null) {
+            inFlight--;
+        }
+    }
+
+    private void removeIdleBuckets() {
+        long now = System.nanoTime();
+        routeGroups.forEach(group -> {
+            group.ipBuckets.values().removeIf(bucket -> bucket.isFull(now));
+            group.subjectBuckets.values().removeIf(bucket -> bucket.isFull(now));
+        });
+    }
+
+    private static JsonObject getDefaultConfiguration() {
+        return new JsonObject()
+                .put("maxInFlight", DEFAULT_MAX_IN_FLIGHT)
+                .put("groups", new JsonArray()
+                        .add(new JsonObject()
+                                .put("name", "security")
+                                .put("paths", new JsonArray().add("^/(login|register)$"))
+                                .put("ip", new JsonObject().put("capacity", 10).put("refillPerSecond", 0.2)))
+                        .add(new JsonObject()
+                                .put("name", "devices")
+                                .put("paths", new JsonArray().add("^/(mount/(move|step)|dome/(open|close))$"))
+                                .put("ip", new JsonObject().put("capacity", 40).put("refillPerSecond", 20))
+                                .put("subject", new JsonObject().put("capacity", 20).put("refillPerSecond", 10)))
+                        .add(new JsonObject()
+                                .put("name", "reservations")
+                                .put("paths", new JsonArray().add("^/reservations"))
+                                .put("ip", new JsonObject().put("capacity", 30).put("refillPerSecond", 5))
+                                .put("subject", new JsonObject().put("capacity", 20).put("refillPerSecond", 2)))
+                        .add(new JsonObject()
+                                .put("name", "streams")
+                                .put("paths", new JsonArray().add("/stream$").add("^/status/(events|socket)$"))
+                                .put("ip", new JsonObject().put("capacity", 10).put("refillPerSecond", 1))
+                                .put("inFlight", false))
+                        .add(new JsonObject()
+                                .put("name", "api")
+                                .put("paths", new JsonArray().add(".*"))
+                                .put("ip", new JsonObject().put("capacity", 100).put("refillPerSecond", 50))));
+    }
+
+    private static class RouteGroup {
+        private final String name;
+        private final List<Pattern> paths;
+        private final JsonObject ipLimit;
+        private final JsonObject subjectLimit;
+        private final boolean inFlight;
+        private final Map<String, TokenBucket> ipBuckets;
+        private final Map<String, TokenBucket> subjectBuckets;
+        private long ipRejected;
+        private long subjectRejected;
+
+        private RouteGroup(JsonObject configuration) {
+            this.name = configuration.getString("name");
+            this.paths = new ArrayList<>();
+            configuration.getJsonArray("paths", new JsonArray()).forEach(path -> paths.add(Pattern.compile((String) path)));
+            this.ipLimit = configuration.getJsonObject("ip");
+            this.subjectLimit = configuration.getJsonObject("subject");
+            this.inFlight = configuration.getBoolean("inFlight", true);
+            this.ipBuckets = new HashMap<>();
+            this.subjectBuckets = new HashMap<>();
+        }
+
+        private boolean matches(String path) {
+            return paths.stream().anyMatch(pattern -> pattern.matcher(path).find());
+        }
+
+        /**
+         * Takes a token from the bucket of the key and returns 0, or the time to wait if there is none left.
+         */
+        private long consume(Map<String, TokenBucket> buckets, JsonObject limit, String key, long now) {
+            if (limit == null || key == null) {
+                return 0;
+            }
+
+            TokenBucket bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(limit.getDouble("capacity"),
+                    limit.getDouble("refillPerSecond"), now));
+
+            return bucket.tryConsume(now) ? 0 : Math.max(1, bucket.getWaitTime(now));
+        }
+    }
+}
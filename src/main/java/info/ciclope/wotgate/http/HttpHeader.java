@@ -5,6 +5,18 @@ public class HttpHeader {
     public static final String CONTENT_TYPE_JSON = "application/json; charset=utf-8";
     public static final String CONTENT_TYPE_TEXT = "text/plain; charset=utf-8";
     public static final String CONTENT_TYPE_IMAGE = "image/jpeg";
+    public static final String CONTENT_TYPE_MULTIPART_REPLACE = "multipart/x-mixed-replace; boundary=";
+    public static final String CONTENT_TYPE_EVENT_STREAM = "text/event-stream; charset=utf-8";
+    public static final String CONTENT_TYPE_PROMETHEUS = "text/plain; version=0.0.4; charset=utf-8";
     public static final String LOCATION = "Location";
     public static final String CONTENT_LOCATION = "Content-Location";
+    public static final String CACHE_CONTROL = "Cache-Control";
+    public static final String CACHE_CONTROL_NO_CACHE = "no-cache";
+    public static final String ETAG = "ETag";
+    public static final String IF_NONE_MATCH = "If-None-Match";
+    public static final String RETRY_AFTER = "Retry-After";
+    public static final String REQUEST_ID = "X-Request-Id";
+    public static final String SERVER_TIMING = "Server-Timing";
+    public static final String LAST_MODIFIED = "Last-Modified";
+    public static final String IF_MODIFIED_SINCE = "If-Modified-Since";
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+package info.ciclope.wotgate.http;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import info.ciclope.wotgate.metrics.Counter;
+import info.ciclope.wotgate.metrics.Histogram;
+import info.ciclope.wotgate.metrics.MetricsRegistry;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.Route;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Counts and times the HTTP requests by route. The route label is the path of the route that ended the response, with
+ * its parameters unresolved, so the number of series stays bounded.
+ */
+@Singleton
+public class HttpMetricsHandler implements Handler<RoutingContext> {
+    private static final String UNMATCHED_ROUTE = "unmatched";
+
+    private final Counter requests;
+    private final Histogram duration;
+
+    @Inject
+    public HttpMetricsHandler(MetricsRegistry metricsRegistry) {
+        this.requests = metricsRegistry.counter("wotgate_http_requests_total",
+                "HTTP requests, by method, route and status code.", "method", "route", "status");
+        this.duration = metricsRegistry.histogram("wotgate_http_request_duration_seconds",
+                "HTTP request latency until the response is ended, by method and route.", "method", "route");
+    }
+
+    /**
+     * Must be routed before any other handler.
+     */
+    @Override
+    public void handle(RoutingContext routingContext) {
+        long start = System.nanoTime();
+        routingContext.addBodyEndHandler(ended -> {
+            Route route = routingContext.currentRoute();
+            String path = route != null && route.getPath() != null ? route.getPath() : UNMATCHED_ROUTE;
+            String method = routingContext.request().rawMethod();
+            HttpServerResponse response = routingContext.response();
+
+            requests.labels(method, path, String.valueOf(response.getStatusCode())).increment();
+            duration.labels(method, path).observeSince(start);
+        });
+
+        routingContext.next();
+    }
+}
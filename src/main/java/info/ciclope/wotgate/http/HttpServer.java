@@ -9,12 +9,14 @@ import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.auth.jwt.JWTAuth;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.CorsHandler;
 import io.vertx.ext.web.handler.JWTAuthHandler;
 
+import javax.inject.Named;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -24,8 +26,12 @@ public class HttpServer {
     private static final int PORT = 8080;
 
     private Vertx vertx;
+    private int port;
     private Router router;
     private JWTAuth jwtAuth;
+    private RequestTraceHandler requestTraceHandler;
+    private HttpMetricsHandler httpMetricsHandler;
+    private AdmissionControlHandler admissionControlHandler;
     private io.vertx.core.http.HttpServer httpServer;
 
     private WeatherstationController weatherstationController;
@@ -35,14 +41,26 @@ public class HttpServer {
     private DomeController domeController;
     private MountController mountController;
     private CameraController cameraController;
+    private StatusStreamController statusStreamController;
+    private BatchController batchController;
+    private ObservatoryController observatoryController;
+    private MetricsController metricsController;
 
     @Inject
-    public HttpServer(Vertx vertx, JWTAuth jwtAuth, WeatherstationController weatherstationController,
+    public HttpServer(Vertx vertx, @Named("configuration") JsonObject configuration, JWTAuth jwtAuth,
+                      RequestTraceHandler requestTraceHandler, HttpMetricsHandler httpMetricsHandler,
+                      AdmissionControlHandler admissionControlHandler, WeatherstationController weatherstationController,
                       SecurityController securityController, ReservationController reservationController,
                       SecurityCameraController securityCameraController, DomeController domeController,
-                      MountController mountController, CameraController cameraController) {
+                      MountController mountController, CameraController cameraController,
+                      StatusStreamController statusStreamController, BatchController batchController,
+                      ObservatoryController observatoryController, MetricsController metricsController) {
         this.vertx = vertx;
+        this.port = configuration.getInteger("http.port", PORT);
         this.jwtAuth = jwtAuth;
+        this.requestTraceHandler = requestTraceHandler;
+        this.httpMetricsHandler = httpMetricsHandler;
+        this.admissionControlHandler = admissionControlHandler;
         this.router = Router.router(vertx);
 
         this.weatherstationController = weatherstationController;
@@ -52,10 +70,14 @@ public class HttpServer {
         this.domeController = domeController;
         this.mountController = mountController;
         this.cameraController = cameraController;
+        this.statusStreamController = statusStreamController;
+        this.batchController = batchController;
+        this.observatoryController = observatoryController;
+        this.metricsController = metricsController;
     }
 
     public void startHttpServer(Handler<AsyncResult<HttpServer>> handler) {
-        HttpServerOptions options = new HttpServerOptions().setPort(PORT);
+        HttpServerOptions options = new HttpServerOptions().setPort(port);
         httpServer = vertx.createHttpServer(options).requestHandler(router::accept).listen(result -> {
             if (result.succeeded()) {
                 configSecurity();
@@ -68,15 +90,25 @@ public class HttpServer {
     }
 
     private void configSecurity() {
+        // Request ID and Server-Timing
+        router.route().handler(requestTraceHandler);
+
+        // Requests count and latency, including the rejected ones
+        router.route().handler(httpMetricsHandler);
+
         // Allow CORS
         HttpMethod[] httpMethods = {HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT, HttpMethod.DELETE, HttpMethod.OPTIONS};
-        String[] headers = {"Content-Type", "Authorization", "X-Requested-With"};
+        String[] headers = {"Content-Type", "Authorization", "X-Requested-With", HttpHeader.REQUEST_ID};
+        String[] exposedHeaders = {HttpHeader.REQUEST_ID, HttpHeader.SERVER_TIMING};
 
         router.route().handler(CorsHandler.create("*")
                 .allowedMethods(new HashSet<>(Arrays.asList(httpMethods)))
                 .allowedHeaders(new HashSet<>(Arrays.asList(headers)))
+                .exposedHeaders(new HashSet<>(Arrays.asList(exposedHeaders)))
                 .maxAgeSeconds(3600));
 
+        // Rate limits per IP and in flight requests cap
+        router.route().handler(admissionControlHandler);
 
         // JWT
         JWTAuthHandler authHandler = JWTAuthHandler.create(jwtAuth);
@@ -97,9 +129,17 @@ public class HttpServer {
                 "/mount/step",
                 "/camera/takePhoto",
                 "/camera/photo/:id");
+        authRoutes.forEach(r -> router.route(r).handler(requestTraceHandler::startAuthentication));
         authRoutes.forEach(r -> router.route(r).handler(authHandler));
+        authRoutes.forEach(r -> router.route(r).handler(requestTraceHandler::endAuthentication));
         // Auth only PUT of /camera/staus
+        router.route(HttpMethod.PUT, "/camera/status").handler(requestTraceHandler::startAuthentication);
         router.route(HttpMethod.PUT, "/camera/status").handler(authHandler);
+        router.route(HttpMethod.PUT, "/camera/status").handler(requestTraceHandler::endAuthentication);
+
+        // Rate limits per authenticated user
+        authRoutes.forEach(r -> router.route(r).handler(admissionControlHandler::handleSubject));
+        router.route(HttpMethod.PUT, "/camera/status").handler(admissionControlHandler::handleSubject);
     }
 
     private void routesManager() {
@@ -122,14 +162,17 @@ public class HttpServer {
 
         // Weather station
         router.get("/weatherstation/status").handler(weatherstationController::getState);
+        router.get("/weatherstation/history").handler(weatherstationController::getHistory);
 
         // Dome
         router.get("/dome/status").handler(domeController::getStatus);
+        router.get("/dome/history").handler(domeController::getHistory);
         router.put("/dome/open").handler(domeController::open);
         router.put("/dome/close").handler(domeController::close);
 
         // Mount
         router.get("/mount/status").handler(mountController::getStatus);
+        router.get("/mount/history").handler(mountController::getHistory);
         router.put("/mount/move").handler(BodyHandler.create()).handler(mountController::move);
         router.post("/mount/step").handler(BodyHandler.create()).handler(mountController::step);
 
@@ -139,9 +182,27 @@ public class HttpServer {
         router.post("/camera/takePhoto").handler(cameraController::takePhoto);
         router.get("/camera/photo/:id").handler(cameraController::getPhoto);
 
+        // Observatory, status of all the things at once
+        router.get("/observatory").handler(observatoryController::getStatus);
+
+        // Batch of operations
+        router.post("/batch").handler(BodyHandler.create()).handler(batchController::batch);
+
+        // Admission control
+        router.get("/admission").handler(admissionControlHandler::getStatistics);
+
+        // Metrics in Prometheus format
+        router.get("/metrics").handler(metricsController::getMetrics);
+
+        // Status changes push
+        router.get("/status/events").handler(statusStreamController::events);
+        router.get("/status/socket").handler(statusStreamController::socket);
+
         // External and internal cameras
         router.get("/externalCamera").handler(securityCameraController::externalCamera);
         router.get("/internalCamera/:id").handler(securityCameraController::internalCamera);
+        router.get("/externalCamera/stream").handler(securityCameraController::externalCameraStream);
+        router.get("/internalCamera/:id/stream").handler(securityCameraController::internalCameraStream);
     }
 
     public void stopHttpServer(Handler<AsyncResult<Void>> handler) {
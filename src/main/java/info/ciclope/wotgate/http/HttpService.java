@@ -1,15 +1,35 @@
 package info.ciclope.wotgate.http;
 
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import info.ciclope.wotgate.thing.HistoryQuery;
+import info.ciclope.wotgate.thing.StatusSnapshot;
+import info.ciclope.wotgate.trace.Trace;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.eventbus.ReplyException;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 
+import java.time.format.DateTimeParseException;
+
 @Singleton
 public class HttpService {
+    private EventBus eventBus;
+
+    @Inject
+    public HttpService(EventBus eventBus) {
+        this.eventBus = eventBus;
+    }
 
     public String getBaseUrl(HttpServerRequest request) {
         String scheme = request.scheme() + "://";
@@ -22,11 +42,54 @@ public class HttpService {
         return context.user().principal().getString("sub");
     }
 
+    /**
+     * Sends a message to a thing on behalf of an HTTP request, propagating its request ID and collecting the timings
+     * of the thing into the trace of the request.
+     */
+    public <T> void send(RoutingContext routingContext, String address, Object params,
+                         Handler<AsyncResult<Message<T>>> handler) {
+        send(routingContext, address, params, DeliveryOptions.DEFAULT_TIMEOUT, handler);
+    }
+
+    /**
+     * Sends a message to a thing on behalf of an HTTP request, waiting the given milliseconds for its reply.
+     */
+    public <T> void send(RoutingContext routingContext, String address, Object params, long timeout,
+                         Handler<AsyncResult<Message<T>>> handler) {
+        Trace trace = RequestTraceHandler.getTrace(routingContext);
+        long start = System.nanoTime();
+        DeliveryOptions options = trace.getDeliveryOptions().setSendTimeout(timeout);
+        eventBus.send(address, params, options, (AsyncResult<Message<T>> response) -> {
+            trace.addTiming("eventbus", address, start);
+            if (response.succeeded()) {
+                trace.addTimings(response.result());
+            }
+            handler.handle(response);
+        });
+    }
+
+    /**
+     * Queries the telemetry history of a thing, at its history address, with the "from", "to" and "step" parameters
+     * of a request.
+     */
+    public void historyHttpResponse(RoutingContext routingContext, String address) {
+        MultiMap queryParams = routingContext.queryParams();
+        HistoryQuery params;
+        try {
+            params = HistoryQuery.of(queryParams.get("from"), queryParams.get("to"), queryParams.get("step"),
+                    System.currentTimeMillis());
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            routingContext.fail(HttpStatus.BAD_REQUEST);
+            return;
+        }
+
+        send(routingContext, address, params,
+                response -> simpleHttpResponseWithBody(routingContext, response));
+    }
+
     public void simpleHttpResponseWithBody(RoutingContext routingContext, AsyncResult<Message<Object>> response) {
         if (response.succeeded()) {
-            HttpServerResponse httpServerResponse = routingContext.response();
-            httpServerResponse.putHeader(HttpHeader.CONTENT_TYPE, HttpHeader.CONTENT_TYPE_JSON);
-            httpServerResponse.end(response.result().body().toString());
+            bodyHttpResponse(routingContext, response.result().body());
         } else {
             routingContext.fail(((ReplyException) response.cause()).failureCode());
         }
@@ -41,4 +104,49 @@ public class HttpService {
             routingContext.fail(((ReplyException) response.cause()).failureCode());
         }
     }
+
+    /**
+     * Responds with the body of a reply of a thing. Status snapshots are responded with their ETag.
+     */
+    public void bodyHttpResponse(RoutingContext routingContext, Object body) {
+        if (body instanceof StatusSnapshot) {
+            snapshotHttpResponse(routingContext, (StatusSnapshot) body);
+            return;
+        }
+
+        HttpServerResponse httpServerResponse = routingContext.response();
+        httpServerResponse.putHeader(HttpHeader.CONTENT_TYPE, HttpHeader.CONTENT_TYPE_JSON);
+        httpServerResponse.end(encodeBody(body));
+    }
+
+    /**
+     * Returns the JSON of the body of a reply, serializing only the typed bodies that are not JSON yet.
+     */
+    public Buffer encodeBody(Object body) {
+        if (body instanceof StatusSnapshot) {
+            return ((StatusSnapshot) body).getBody();
+        } else if (body instanceof Buffer) {
+            return (Buffer) body;
+        } else if (body instanceof JsonObject) {
+            return ((JsonObject) body).toBuffer();
+        } else if (body instanceof JsonArray) {
+            return ((JsonArray) body).toBuffer();
+        }
+
+        return Json.encodeToBuffer(body);
+    }
+
+    public void snapshotHttpResponse(RoutingContext routingContext, StatusSnapshot snapshot) {
+        HttpServerResponse httpServerResponse = routingContext.response();
+        httpServerResponse.putHeader(HttpHeader.ETAG, snapshot.getEtag());
+        httpServerResponse.putHeader(HttpHeader.CACHE_CONTROL, HttpHeader.CACHE_CONTROL_NO_CACHE);
+
+        if (snapshot.matches(routingContext.request().getHeader(HttpHeader.IF_NONE_MATCH))) {
+            httpServerResponse.setStatusCode(HttpStatus.NOT_MODIFIED);
+            httpServerResponse.end();
+        } else {
+            httpServerResponse.putHeader(HttpHeader.CONTENT_TYPE, HttpHeader.CONTENT_TYPE_JSON);
+            httpServerResponse.end(snapshot.getBody());
+        }
+    }
 }
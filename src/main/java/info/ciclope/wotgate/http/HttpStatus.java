@@ -25,12 +25,16 @@ public class HttpStatus {
     public static final Integer CREATED = 201;
     public static final Integer ACCEPTED = 202;
     public static final Integer NO_CONTENT = 204;
+    public static final Integer NOT_MODIFIED = 304;
     public static final Integer BAD_REQUEST = 400;
     public static final Integer UNAUTHORIZED = 401;
     public static final Integer FORBIDDEN = 403;
     public static final Integer RESOURCE_NOT_FOUND = 404;
     public static final Integer CONFLICT = 409;
     public static final Integer GONE = 410;
+    public static final Integer TOO_MANY_REQUESTS = 429;
     public static final Integer INTERNAL_ERROR = 500;
     public static final Integer NOT_IMPLEMENTED = 501;
+    public static final Integer SERVICE_UNAVAILABLE = 503;
+    public static final Integer GATEWAY_TIMEOUT = 504;
 }
@@ -0,0 +1,94 @@
+package info.ciclope.wotgate.http;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import info.ciclope.wotgate.trace.Trace;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.inject.Named;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Assigns a request ID to every HTTP request, or keeps the one sent by the client in X-Request-Id, and starts its
+ * trace. The timings collected along the request are returned in the Server-Timing header of the response. A sample
+ * of the requests, set by the "http.trace" configuration as {"sampleRate": 0.01}, is also written to the trace log.
+ */
+@Singleton
+public class RequestTraceHandler implements Handler<RoutingContext> {
+    private static final String CONFIGURATION_KEY = "http.trace";
+    private static final String TRACE_KEY = "trace";
+    private static final String AUTHENTICATION_START_KEY = "trace.authenticationStart";
+    private static final Pattern REQUEST_ID_PATTERN = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+    private static final Logger TRACE_LOGGER = LoggerFactory.getLogger("info.ciclope.wotgate.trace");
+
+    private final double sampleRate;
+
+    @Inject
+    public RequestTraceHandler(@Named("configuration") JsonObject configuration) {
+        this.sampleRate = configuration.getJsonObject(CONFIGURATION_KEY, new JsonObject()).getDouble("sampleRate", 0.0);
+    }
+
+    /**
+     * Returns the trace of an HTTP request.
+     */
+    public static Trace getTrace(RoutingContext routingContext) {
+        Trace trace = routingContext.get(TRACE_KEY);
+        return trace != null ? trace : new Trace(null);
+    }
+
+    /**
+     * Must be routed before any other handler.
+     */
+    @Override
+    public void handle(RoutingContext routingContext) {
+        long start = System.nanoTime();
+        String requestId = routingContext.request().getHeader(HttpHeader.REQUEST_ID);
+        if (requestId == null || !REQUEST_ID_PATTERN.matcher(requestId).matches()) {
+            requestId = UUID.randomUUID().toString();
+        }
+
+        Trace trace = new Trace(requestId);
+        routingContext.put(TRACE_KEY, trace);
+
+        HttpServerResponse response = routingContext.response();
+        response.putHeader(HttpHeader.REQUEST_ID, requestId);
+        routingContext.addHeadersEndHandler(headersEnd -> {
+            trace.addTiming("total", null, start);
+            response.putHeader(HttpHeader.SERVER_TIMING, trace.getServerTiming());
+        });
+
+        if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            routingContext.addBodyEndHandler(bodyEnd -> TRACE_LOGGER.info(trace.getRequestId() + " "
+                    + routingContext.request().rawMethod() + " " + routingContext.request().path() + " "
+                    + response.getStatusCode() + " " + trace.getServerTiming()));
+        }
+
+        routingContext.next();
+    }
+
+    /**
+     * Marks the start of the authentication. Must be routed just before the authentication handler.
+     */
+    public void startAuthentication(RoutingContext routingContext) {
+        routingContext.put(AUTHENTICATION_START_KEY, System.nanoTime());
+        routingContext.next();
+    }
+
+    /**
+     * Adds the timing of the authentication. Must be routed just after the authentication handler.
+     */
+    public void endAuthentication(RoutingContext routingContext) {
+        Long start = routingContext.remove(AUTHENTICATION_START_KEY);
+        if (start != null) {
+            getTrace(routingContext).addTiming("auth", null, start);
+        }
+        routingContext.next();
+    }
+}
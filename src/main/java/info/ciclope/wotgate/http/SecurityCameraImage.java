@@ -0,0 +1,83 @@
+package info.ciclope.wotgate.http;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Immutable image of a security camera. The body is only present when the image is kept in memory, otherwise it must
+ * be sent from its file.
+ */
+public class SecurityCameraImage {
+    private final String path;
+    private final long size;
+    private final long lastModified;
+    private final String etag;
+    private final String lastModifiedHeader;
+    private final Buffer body;
+
+    public SecurityCameraImage(String path, long size, long lastModified, Buffer body) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+        this.lastModifiedHeader = DateTimeFormatter.RFC_1123_DATE_TIME
+                .format(Instant.ofEpochMilli(lastModified).atZone(ZoneOffset.UTC));
+        this.body = body;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModifiedHeader() {
+        return lastModifiedHeader;
+    }
+
+    public Buffer getBody() {
+        return body;
+    }
+
+    public boolean isNotModified(HttpServerRequest request) {
+        String ifNoneMatch = request.getHeader(HttpHeader.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String trimmed = tag.trim();
+                if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        String ifModifiedSince = request.getHeader(HttpHeader.IF_MODIFIED_SINCE);
+        if (ifModifiedSince != null) {
+            try {
+                long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME)
+                        .toInstant().getEpochSecond();
+                return lastModified / 1000 <= since;
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,258 @@
+package info.ciclope.wotgate.http;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.vertx.core.*;
+import io.vertx.core.file.FileProps;
+import io.vertx.core.file.FileSystem;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Keeps the hot images of the security cameras in memory, bounded by size. A file watcher on the cameras directory
+ * refreshes the cached images when they are rewritten, so requests never touch the file system for them. Images too
+ * big to be cached, or not fitting in the cache any more, keep only their metadata and are sent from their file, as
+ * every image is when there is no file watcher.
+ * <p>
+ * Live viewers register an image handler for a camera. Every new frame is read once and handed to all the handlers
+ * of its camera.
+ */
+@Singleton
+public class SecurityCameraImageCache {
+    public static final String CAMERAS_DIRECTORY = "cameras";
+
+    private static final long MAX_CACHE_SIZE = 16 * 1024 * 1024; // 16 MB
+    private static final long MAX_CACHED_IMAGE_SIZE = 2 * 1024 * 1024; // 2 MB
+    private static final int MAX_CACHED_IMAGES = 64;
+    private static final long POLL_INTERVAL = 1000; // 1 second, only used without file watcher
+
+    private final Vertx vertx;
+    private final FileSystem fs;
+    private final LinkedHashMap<String, SecurityCameraImage> images;
+    private final Map<String, List<Handler<SecurityCameraImage>>> imageHandlers;
+    private final Map<String, SecurityCameraImage> lastFrames;
+    private long cacheSize;
+    private Context context;
+    private boolean watching;
+    private long pollTimerId = -1;
+
+    @Inject
+    public SecurityCameraImageCache(Vertx vertx) {
+        this.vertx = vertx;
+        this.fs = vertx.fileSystem();
+        this.images = new LinkedHashMap<>(16, 0.75f, true);
+        this.imageHandlers = new HashMap<>();
+        this.lastFrames = new HashMap<>();
+    }
+
+    /**
+     * Gets an image, from memory when possible. Must always be called from the same context, the one of the HTTP
+     * server.
+     */
+    public void getImage(String path, Handler<AsyncResult<SecurityCameraImage>> handler) {
+        startWatcher();
+
+        SecurityCameraImage image = images.get(path);
+        if (image != null) {
+            handler.handle(Future.succeededFuture(image));
+        } else {
+            loadImage(path, handler);
+        }
+    }
+
+    /**
+     * Registers a handler called with every new frame of the image, always with its body loaded.
+     */
+    public void addImageHandler(String path, Handler<SecurityCameraImage> handler) {
+        startWatcher();
+
+        imageHandlers.computeIfAbsent(path, key -> new ArrayList<>()).add(handler);
+        if (!watching && pollTimerId == -1) {
+            pollTimerId = vertx.setPeriodic(POLL_INTERVAL, timer -> new HashSet<>(imageHandlers.keySet())
+                    .forEach(this::pollImage));
+        }
+    }
+
+    public void removeImageHandler(String path, Handler<SecurityCameraImage> handler) {
+        List<Handler<SecurityCameraImage>> handlers = imageHandlers.get(path);
+        if (handlers != null) {
+            handlers.remove(handler);
+            if (handlers.isEmpty()) {
+                imageHandlers.remove(path);
+                lastFrames.remove(path);
+            }
+        }
+
+        if (imageHandlers.isEmpty() && pollTimerId != -1) {
+            vertx.cancelTimer(pollTimerId);
+            pollTimerId = -1;
+        }
+    }
+
+    private void loadImage(String path, Handler<AsyncResult<SecurityCameraImage>> handler) {
+        fs.props(path, props -> {
+            if (props.failed() || !props.result().isRegularFile()) {
+                removeImage(path);
+                handler.handle(Future.failedFuture(props.failed() ? props.cause() : new NoSuchFileException(path)));
+                return;
+            }
+
+            loadImage(path, props.result(), handler);
+        });
+    }
+
+    private void loadImage(String path, FileProps props, Handler<AsyncResult<SecurityCameraImage>> handler) {
+        long size = props.size();
+        long lastModified = props.lastModifiedTime();
+        if (!isCacheable(path, size) && !imageHandlers.containsKey(path)) {
+            // Only read into memory to be kept there or streamed, otherwise sent from its file
+            SecurityCameraImage image = new SecurityCameraImage(path, size, lastModified, null);
+            cacheImage(image);
+            handler.handle(Future.succeededFuture(image));
+            return;
+        }
+
+        fs.readFile(path, read -> {
+            if (read.succeeded()) {
+                SecurityCameraImage image = new SecurityCameraImage(path, read.result().length(), lastModified,
+                        read.result());
+                cacheImage(image);
+                notifyImageHandlers(image);
+                handler.handle(Future.succeededFuture(image));
+            } else {
+                removeImage(path);
+                handler.handle(Future.failedFuture(read.cause()));
+            }
+        });
+    }
+
+    /**
+     * Returns whether an image of a size would be kept in memory without evicting others, which requires the file
+     * watcher to keep it fresh.
+     */
+    private boolean isCacheable(String path, long size) {
+        SecurityCameraImage cached = images.get(path);
+        long freeSize = MAX_CACHE_SIZE - cacheSize + (cached != null ? getCachedSize(cached) : 0);
+
+        return watching && size <= MAX_CACHED_IMAGE_SIZE && size <= freeSize;
+    }
+
+    private void pollImage(String path) {
+        fs.props(path, props -> {
+            SecurityCameraImage lastFrame = lastFrames.get(path);
+            if (props.succeeded() && props.result().isRegularFile() && (lastFrame == null
+                    || lastFrame.getLastModified() != props.result().lastModifiedTime()
+                    || lastFrame.getSize() != props.result().size())) {
+                loadImage(path, props.result(), loaded -> {
+                });
+            }
+        });
+    }
+
+    private void notifyImageHandlers(SecurityCameraImage image) {
+        List<Handler<SecurityCameraImage>> handlers = imageHandlers.get(image.getPath());
+        SecurityCameraImage lastFrame = lastFrames.get(image.getPath());
+        if (image.getSize() == 0 || (lastFrame != null && lastFrame.getSize() == image.getSize()
+                && lastFrame.getLastModified() == image.getLastModified())) {
+            // Image being rewritten or notified twice, not a new frame
+            return;
+        }
+
+        if (handlers != null) {
+            lastFrames.put(image.getPath(), image);
+            new ArrayList<>(handlers).forEach(handler -> handler.handle(image));
+        }
+    }
+
+    private void cacheImage(SecurityCameraImage image) {
+        if (!watching) {
+            // Without change notifications a cached image could become stale
+            return;
+        }
+
+        if (image.getBody() != null && image.getSize() > MAX_CACHED_IMAGE_SIZE) {
+            image = new SecurityCameraImage(image.getPath(), image.getSize(), image.getLastModified(), null);
+        }
+
+        removeImage(image.getPath());
+        images.put(image.getPath(), image);
+        cacheSize += getCachedSize(image);
+
+        Iterator<SecurityCameraImage> eldest = images.values().iterator();
+        while ((cacheSize > MAX_CACHE_SIZE || images.size() > MAX_CACHED_IMAGES) && eldest.hasNext()) {
+            SecurityCameraImage evicted = eldest.next();
+            if (evicted != image) {
+                cacheSize -= getCachedSize(evicted);
+                eldest.remove();
+            }
+        }
+    }
+
+    private void removeImage(String path) {
+        SecurityCameraImage removed = images.remove(path);
+        if (removed != null) {
+            cacheSize -= getCachedSize(removed);
+        }
+    }
+
+    private long getCachedSize(SecurityCameraImage image) {
+        return image.getBody() != null ? image.getBody().length() : 0;
+    }
+
+    private void onImagesChanged(Set<String> paths) {
+        if (paths == null) {
+            // Events were lost, refresh every cached or viewed image
+            paths = new HashSet<>(images.keySet());
+            paths.addAll(imageHandlers.keySet());
+        }
+
+        paths.stream()
+                .filter(path -> images.containsKey(path) || imageHandlers.containsKey(path))
+                .forEach(path -> loadImage(path, refreshed -> {
+                }));
+    }
+
+    private void startWatcher() {
+        if (context != null) {
+            return;
+        }
+
+        context = vertx.getOrCreateContext();
+        try {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            Paths.get(CAMERAS_DIRECTORY).register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+            Thread watcher = new Thread(() -> watch(watchService), "wotgate-camera-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+            watching = true;
+        } catch (IOException e) {
+            watching = false;
+        }
+    }
+
+    private void watch(WatchService watchService) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Set<String> paths = new HashSet<>();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        paths = null;
+                        break;
+                    }
+                    paths.add(CAMERAS_DIRECTORY + "/" + event.context());
+                }
+                key.reset();
+
+                Set<String> changedPaths = paths;
+                context.runOnContext(event -> onImagesChanged(changedPaths));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package info.ciclope.wotgate.http.controller;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import info.ciclope.wotgate.http.AdmissionControlHandler;
+import info.ciclope.wotgate.http.HttpHeader;
+import info.ciclope.wotgate.http.HttpService;
+import info.ciclope.wotgate.http.HttpStatus;
+import info.ciclope.wotgate.http.RequestTraceHandler;
+import info.ciclope.wotgate.thing.StatusSnapshot;
+import info.ciclope.wotgate.thing.StatusSnapshotStore;
+import info.ciclope.wotgate.thing.camera.CameraInfo;
+import info.ciclope.wotgate.thing.dome.DomeInfo;
+import info.ciclope.wotgate.thing.gatekeeper.GateKeeperInfo;
+import info.ciclope.wotgate.thing.gatekeeper.model.ReservationQuery;
+import info.ciclope.wotgate.thing.mount.MountInfo;
+import info.ciclope.wotgate.thing.weatherstation.WeatherStationInfo;
+import info.ciclope.wotgate.trace.Trace;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import io.vertx.ext.web.RoutingContext;
+
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executes several read operations of the gateway in one HTTP call. The JWT, if any, is verified only once for the
+ * whole batch and the operations are dispatched concurrently to the things. Every operation is admitted with the limits
+ * of its own route, as if requested alone, and answered with 429 otherwise.
+ * <p>
+ * Request: {"requests": [{"id": "dome", "method": "GET", "path": "/dome/status"}, ...]}
+ * <br>
+ * Response: {"responses": [{"id": "dome", "status": 200, "body": {...}}, ...]}
+ */
+@Singleton
+public class BatchController {
+    private static final int MAX_REQUESTS = 20;
+    private static final String BEARER = "Bearer ";
+
+    private EventBus eventBus;
+    private JWTAuth jwtAuth;
+    private StatusSnapshotStore statusSnapshotStore;
+    private HttpService httpService;
+    private AdmissionControlHandler admissionControlHandler;
+    private final Map<String, Operation> operations;
+
+    @Inject
+    public BatchController(EventBus eventBus, JWTAuth jwtAuth, StatusSnapshotStore statusSnapshotStore,
+                           HttpService httpService, AdmissionControlHandler admissionControlHandler) {
+        this.eventBus = eventBus;
+        this.jwtAuth = jwtAuth;
+        this.statusSnapshotStore = statusSnapshotStore;
+        this.httpService = httpService;
+        this.admissionControlHandler = admissionControlHandler;
+        this.operations = new HashMap<>();
+
+        // Users
+        operations.put("/users/logged", (user, query, trace) ->
+                send(GateKeeperInfo.NAME + GateKeeperInfo.GET_USER, usernameParams(user), trace));
+
+        // Reservations
+        operations.put("/reservations", (user, query, trace) -> {
+            String start = getQueryParam(query, "start");
+            String end = getQueryParam(query, "end");
+            if (start == null || end == null) {
+                return Future.succeededFuture(new BatchResponse(HttpStatus.BAD_REQUEST, null));
+            }
+            ReservationQuery params;
+            try {
+                params = ReservationQuery.ofDays(start, end);
+            } catch (DateTimeParseException e) {
+                return Future.succeededFuture(new BatchResponse(HttpStatus.BAD_REQUEST, null));
+            }
+            return send(GateKeeperInfo.NAME + GateKeeperInfo.GET_RESERVATIONS_RANGE, params, trace);
+        });
+        operations.put("/reservations/own", (user, query, trace) ->
+                send(GateKeeperInfo.NAME + GateKeeperInfo.GET_RESERVATIONS_USER, usernameParams(user), trace));
+        operations.put("/reservations/actual", (user, query, trace) ->
+                send(GateKeeperInfo.NAME + GateKeeperInfo.GET_ACTUAL_RESERVATION, null, trace));
+
+        // Things status
+        operations.put("/weatherstation/status", (user, query, trace) ->
+                getStatus(WeatherStationInfo.NAME, WeatherStationInfo.STATUS, trace));
+        operations.put("/dome/status", (user, query, trace) ->
+                getStatus(DomeInfo.NAME, DomeInfo.STATUS, trace));
+        operations.put("/mount/status", (user, query, trace) ->
+                getStatus(MountInfo.NAME, MountInfo.STATUS, trace));
+        operations.put("/camera/status", (user, query, trace) ->
+                getStatus(CameraInfo.NAME, CameraInfo.STATUS, trace));
+    }
+
+    public void batch(RoutingContext routingContext) {
+        JsonArray requests;
+        try {
+            requests = routingContext.getBodyAsJson().getJsonArray("requests");
+        } catch (DecodeException | ClassCastException | NullPointerException e) {
+            requests = null;
+        }
+
+        if (requests == null || requests.isEmpty() || requests.size() > MAX_REQUESTS) {
+            routingContext.fail(HttpStatus.BAD_REQUEST);
+            return;
+        }
+
+        JsonArray batchRequests = requests;
+        authenticate(routingContext, authentication -> {
+            if (authentication.failed()) {
+                routingContext.fail(HttpStatus.UNAUTHORIZED);
+                return;
+            }
+
+            Trace trace = RequestTraceHandler.getTrace(routingContext);
+            String address = routingContext.request().remoteAddress().host();
+            List<Future> responses = new ArrayList<>();
+            for (int i = 0; i < batchRequests.size(); i++) {
+                responses.add(execute(batchRequests.getValue(i), authentication.result(), address, trace));
+            }
+
+            CompositeFuture.all(responses).setHandler(all -> {
+                Buffer body = Buffer.buffer("{\"responses\":[");
+                for (int i = 0; i < responses.size(); i++) {
+                    BatchResponse response = (BatchResponse) responses.get(i).result();
+                    Object id = batchRequests.getValue(i) instanceof JsonObject ?
+                            ((JsonObject) batchRequests.getValue(i)).getValue("id") : null;
+                    if (i > 0) {
+                        body.appendString(",");
+                    }
+                    body.appendString("{\"id\":").appendString(Json.encode(id))
+                            .appendString(",\"status\":").appendString(String.valueOf(response.status))
+                            .appendString(",\"body\":").appendBuffer(response.body != null ? response.body : Buffer.buffer("null"))
+                            .appendString("}");
+                }
+                body.appendString("]}");
+
+                HttpServerResponse httpServerResponse = routingContext.response();
+                httpServerResponse.putHeader(HttpHeader.CONTENT_TYPE, HttpHeader.CONTENT_TYPE_JSON);
+                httpServerResponse.end(body);
+            });
+        });
+    }
+
+    private void authenticate(RoutingContext routingContext, Handler<AsyncResult<User>> handler) {
+        String authorization = routingContext.request().getHeader("Authorization");
+        if (authorization == null) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+
+        if (!authorization.startsWith(BEARER)) {
+            handler.handle(Future.failedFuture("Bad authorization header"));
+            return;
+        }
+
+        jwtAuth.authenticate(new JsonObject().put("jwt", authorization.substring(BEARER.length())), handler);
+    }
+
+    private Future<BatchResponse> execute(Object request, User user, String address, Trace trace) {
+        if (!(request instanceof JsonObject)) {
+            return Future.succeededFuture(new BatchResponse(HttpStatus.BAD_REQUEST, null));
+        }
+
+        String method = ((JsonObject) request).getString("method", "GET");
+        String uri = ((JsonObject) request).getString("path", "");
+        QueryStringDecoder decoder = new QueryStringDecoder(uri);
+        Operation operation = operations.get(decoder.path());
+        if (!method.equals("GET") || operation == null) {
+            return Future.succeededFuture(new BatchResponse(HttpStatus.RESOURCE_NOT_FOUND, null));
+        }
+
+        if (user == null && !decoder.path().endsWith("/status")) {
+            return Future.succeededFuture(new BatchResponse(HttpStatus.UNAUTHORIZED, null));
+        }
+
+        String subject = user != null ? user.principal().getString("sub") : null;
+        if (admissionControlHandler.admitOperation(decoder.path(), address, subject) > 0) {
+            return Future.succeededFuture(new BatchResponse(HttpStatus.TOO_MANY_REQUESTS, null));
+        }
+
+        return operation.execute(user, decoder.parameters(), trace);
+    }
+
+    private Future<BatchResponse> getStatus(String thingName, String statusAction, Trace trace) {
+        StatusSnapshot snapshot = statusSnapshotStore.get(thingName);
+        if (snapshot != null) {
+            return Future.succeededFuture(new BatchResponse(HttpStatus.OK, snapshot.getBody()));
+        }
+
+        return send(thingName + statusAction, null, trace);
+    }
+
+    private Future<BatchResponse> send(String address, Object params, Trace trace) {
+        Future<BatchResponse> future = Future.future();
+        long start = System.nanoTime();
+        eventBus.send(address, params, trace.getDeliveryOptions(), (AsyncResult<Message<Object>> response) -> {
+            trace.addTiming("eventbus", address, start);
+            if (response.succeeded()) {
+                trace.addTimings(response.result());
+                Object body = response.result().body();
+                future.complete(new BatchResponse(HttpStatus.OK, body == null ? null : httpService.encodeBody(body)));
+            } else if (response.cause() instanceof ReplyException
+                    && ((ReplyException) response.cause()).failureType() == ReplyFailure.RECIPIENT_FAILURE) {
+                future.complete(new BatchResponse(((ReplyException) response.cause()).failureCode(), null));
+            } else {
+                // No thing handling the address or timeout
+                future.complete(new BatchResponse(HttpStatus.SERVICE_UNAVAILABLE, null));
+            }
+        });
+
+        return future;
+    }
+
+    private JsonObject usernameParams(User user) {
+        return new JsonObject().put("username", user.principal().getString("sub"));
+    }
+
+    private String getQueryParam(Map<String, List<String>> query, String name) {
+        List<String> values = query.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private interface Operation {
+        Future<BatchResponse> execute(User user, Map<String, List<String>> query, Trace trace);
+    }
+
+    private static class BatchResponse {
+        private final int status;
+        private final Buffer body;
+
+        private BatchResponse(int status, Buffer body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
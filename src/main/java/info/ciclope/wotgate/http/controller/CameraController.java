@@ -3,25 +3,32 @@ package info.ciclope.wotgate.http.controller;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import info.ciclope.wotgate.http.HttpService;
+import info.ciclope.wotgate.thing.StatusSnapshot;
+import info.ciclope.wotgate.thing.StatusSnapshotStore;
 import info.ciclope.wotgate.thing.camera.CameraInfo;
-import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 
 @Singleton
 public class CameraController {
 
-    private EventBus eventBus;
     private HttpService httpService;
+    private StatusSnapshotStore statusSnapshotStore;
 
     @Inject
-    public CameraController(EventBus eventBus, HttpService httpService) {
-        this.eventBus = eventBus;
+    public CameraController(HttpService httpService, StatusSnapshotStore statusSnapshotStore) {
         this.httpService = httpService;
+        this.statusSnapshotStore = statusSnapshotStore;
     }
 
     public void getStatus(RoutingContext routingContext) {
-        eventBus.send(CameraInfo.NAME + CameraInfo.STATUS, null,
+        StatusSnapshot snapshot = statusSnapshotStore.get(CameraInfo.NAME);
+        if (snapshot != null) {
+            httpService.snapshotHttpResponse(routingContext, snapshot);
+            return;
+        }
+
+        httpService.send(routingContext, CameraInfo.NAME + CameraInfo.STATUS, null,
                 response -> httpService.simpleHttpResponseWithBody(routingContext, response));
     }
 
@@ -31,7 +38,7 @@ public class CameraController {
         params.put("username", username);
         params.put("body", routingContext.getBodyAsJson());
 
-        eventBus.send(CameraInfo.NAME + CameraInfo.CONFIG, params,
+        httpService.send(routingContext, CameraInfo.NAME + CameraInfo.CONFIG, params,
                 response -> httpService.simpleHttpResponse(routingContext, response));
     }
 
@@ -39,7 +46,7 @@ public class CameraController {
         String username = httpService.getUsernameFromToken(routingContext);
         JsonObject params = new JsonObject().put("username", username);
 
-        eventBus.send(CameraInfo.NAME + CameraInfo.TAKE_PHOTO, params,
+        httpService.send(routingContext, CameraInfo.NAME + CameraInfo.TAKE_PHOTO, params,
                 response -> httpService.simpleHttpResponseWithBody(routingContext, response));
     }
 
@@ -50,7 +57,7 @@ public class CameraController {
         params.put("username", username);
         params.put("photoId", photoId);
 
-        eventBus.send(CameraInfo.NAME + CameraInfo.GET_PHOTO, params,
+        httpService.send(routingContext, CameraInfo.NAME + CameraInfo.GET_PHOTO, params,
                 response -> httpService.simpleHttpResponseWithBody(routingContext, response));
     }
 }
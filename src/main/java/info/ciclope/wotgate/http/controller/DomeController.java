@@ -2,40 +2,60 @@ package info.ciclope.wotgate.http.controller;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import info.ciclope.wotgate.amqp.ActuationTracker;
 import info.ciclope.wotgate.http.HttpService;
+import info.ciclope.wotgate.thing.StatusSnapshot;
+import info.ciclope.wotgate.thing.StatusSnapshotStore;
 import info.ciclope.wotgate.thing.dome.DomeInfo;
-import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 
 @Singleton
 public class DomeController {
+    private static final long WAIT_MARGIN = 5000; // 5 seconds
 
-    private EventBus eventBus;
     private HttpService httpService;
+    private StatusSnapshotStore statusSnapshotStore;
 
     @Inject
-    public DomeController(EventBus eventBus, HttpService httpService) {
-        this.eventBus = eventBus;
+    public DomeController(HttpService httpService, StatusSnapshotStore statusSnapshotStore) {
         this.httpService = httpService;
+        this.statusSnapshotStore = statusSnapshotStore;
     }
 
     public void getStatus(RoutingContext routingContext) {
-        eventBus.send(DomeInfo.NAME + DomeInfo.STATUS, null,
+        StatusSnapshot snapshot = statusSnapshotStore.get(DomeInfo.NAME);
+        if (snapshot != null) {
+            httpService.snapshotHttpResponse(routingContext, snapshot);
+            return;
+        }
+
+        httpService.send(routingContext, DomeInfo.NAME + DomeInfo.STATUS, null,
                 response -> httpService.simpleHttpResponseWithBody(routingContext, response));
     }
 
+    public void getHistory(RoutingContext routingContext) {
+        httpService.historyHttpResponse(routingContext, DomeInfo.NAME + DomeInfo.HISTORY);
+    }
+
     public void open(RoutingContext routingContext) {
-        String username = httpService.getUsernameFromToken(routingContext);
-        JsonObject params = new JsonObject().put("username", username);
-        eventBus.send(DomeInfo.NAME + DomeInfo.OPEN, params,
-                response -> httpService.simpleHttpResponse(routingContext, response));
+        sendAction(routingContext, DomeInfo.OPEN);
     }
 
     public void close(RoutingContext routingContext) {
+        sendAction(routingContext, DomeInfo.CLOSE);
+    }
+
+    /**
+     * With "?wait=true" the response is sent once the dome executes the action, instead of once it is sent.
+     */
+    private void sendAction(RoutingContext routingContext, String action) {
         String username = httpService.getUsernameFromToken(routingContext);
-        JsonObject params = new JsonObject().put("username", username);
-        eventBus.send(DomeInfo.NAME + DomeInfo.CLOSE, params,
+        boolean wait = Boolean.parseBoolean(routingContext.request().getParam("wait"));
+        JsonObject params = new JsonObject().put("username", username).put("wait", wait);
+        long timeout = wait ? ActuationTracker.ACTUATION_TIMEOUT + WAIT_MARGIN : DeliveryOptions.DEFAULT_TIMEOUT;
+        httpService.send(routingContext, DomeInfo.NAME + action, params, timeout,
                 response -> httpService.simpleHttpResponse(routingContext, response));
     }
 }
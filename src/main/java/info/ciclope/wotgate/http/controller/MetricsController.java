@@ -0,0 +1,24 @@
+package info.ciclope.wotgate.http.controller;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import info.ciclope.wotgate.http.HttpHeader;
+import info.ciclope.wotgate.metrics.MetricsRegistry;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+
+@Singleton
+public class MetricsController {
+    private MetricsRegistry metricsRegistry;
+
+    @Inject
+    public MetricsController(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    public void getMetrics(RoutingContext routingContext) {
+        HttpServerResponse response = routingContext.response();
+        response.putHeader(HttpHeader.CONTENT_TYPE, HttpHeader.CONTENT_TYPE_PROMETHEUS);
+        response.end(metricsRegistry.scrape());
+    }
+}
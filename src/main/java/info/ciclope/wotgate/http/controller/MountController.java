@@ -3,45 +3,68 @@ package info.ciclope.wotgate.http.controller;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import info.ciclope.wotgate.http.HttpService;
+import info.ciclope.wotgate.http.HttpStatus;
+import info.ciclope.wotgate.thing.StatusSnapshot;
+import info.ciclope.wotgate.thing.StatusSnapshotStore;
 import info.ciclope.wotgate.thing.mount.MountInfo;
-import io.vertx.core.eventbus.EventBus;
-import io.vertx.core.json.JsonObject;
+import info.ciclope.wotgate.thing.mount.model.Direction;
+import info.ciclope.wotgate.thing.mount.model.MountCommand;
+import info.ciclope.wotgate.thing.mount.model.Movement;
+import io.vertx.core.json.DecodeException;
 import io.vertx.ext.web.RoutingContext;
 
 @Singleton
 public class MountController {
 
-    private EventBus eventBus;
     private HttpService httpService;
+    private StatusSnapshotStore statusSnapshotStore;
 
     @Inject
-    public MountController(EventBus eventBus, HttpService httpService) {
-        this.eventBus = eventBus;
+    public MountController(HttpService httpService, StatusSnapshotStore statusSnapshotStore) {
         this.httpService = httpService;
+        this.statusSnapshotStore = statusSnapshotStore;
     }
 
     public void getStatus(RoutingContext routingContext) {
-        eventBus.send(MountInfo.NAME + MountInfo.STATUS, null,
+        StatusSnapshot snapshot = statusSnapshotStore.get(MountInfo.NAME);
+        if (snapshot != null) {
+            httpService.snapshotHttpResponse(routingContext, snapshot);
+            return;
+        }
+
+        httpService.send(routingContext, MountInfo.NAME + MountInfo.STATUS, null,
                 response -> httpService.simpleHttpResponseWithBody(routingContext, response));
     }
 
+    public void getHistory(RoutingContext routingContext) {
+        httpService.historyHttpResponse(routingContext, MountInfo.NAME + MountInfo.HISTORY);
+    }
+
     public void move(RoutingContext routingContext) {
         String username = httpService.getUsernameFromToken(routingContext);
-        JsonObject params = new JsonObject();
-        params.put("body", routingContext.getBodyAsJson());
-        params.put("username", username);
+        MountCommand params;
+        try {
+            params = MountCommand.move(username, routingContext.getBodyAsJson().mapTo(Movement.class));
+        } catch (DecodeException | IllegalArgumentException | NullPointerException e) {
+            routingContext.fail(HttpStatus.BAD_REQUEST);
+            return;
+        }
 
-        eventBus.send(MountInfo.NAME + MountInfo.MOVE, params,
+        httpService.send(routingContext, MountInfo.NAME + MountInfo.MOVE, params,
                 response -> httpService.simpleHttpResponse(routingContext, response));
     }
 
     public void step(RoutingContext routingContext) {
         String username = httpService.getUsernameFromToken(routingContext);
-        JsonObject params = new JsonObject();
-        params.put("body", routingContext.getBodyAsJson());
-        params.put("username", username);
+        MountCommand params;
+        try {
+            params = MountCommand.step(username, routingContext.getBodyAsJson().mapTo(Direction.class));
+        } catch (DecodeException | IllegalArgumentException | NullPointerException e) {
+            routingContext.fail(HttpStatus.BAD_REQUEST);
+            return;
+        }
 
-        eventBus.send(MountInfo.NAME + MountInfo.STEP, params,
+        httpService.send(routingContext, MountInfo.NAME + MountInfo.STEP, params,
                 response -> httpService.simpleHttpResponse(routingContext, response));
     }
 }
@@ -0,0 +1,24 @@
+package info.ciclope.wotgate.http.controller;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import info.ciclope.wotgate.http.HttpService;
+import info.ciclope.wotgate.thing.StatusSnapshotStore;
+import io.vertx.ext.web.RoutingContext;
+
+@Singleton
+public class ObservatoryController {
+
+    private HttpService httpService;
+    private StatusSnapshotStore statusSnapshotStore;
+
+    @Inject
+    public ObservatoryController(HttpService httpService, StatusSnapshotStore statusSnapshotStore) {
+        this.httpService = httpService;
+        this.statusSnapshotStore = statusSnapshotStore;
+    }
+
+    public void getStatus(RoutingContext routingContext) {
+        httpService.snapshotHttpResponse(routingContext, statusSnapshotStore.getObservatory());
+    }
+}
@@ -7,23 +7,23 @@ import info.ciclope.wotgate.http.HttpStatus;
 import info.ciclope.wotgate.http.HttpService;
 import info.ciclope.wotgate.thing.gatekeeper.GateKeeperInfo;
 import info.ciclope.wotgate.thing.gatekeeper.model.AuthorityName;
+import info.ciclope.wotgate.thing.gatekeeper.model.ReservationQuery;
 import io.vertx.core.MultiMap;
-import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.ReplyException;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.auth.User;
 import io.vertx.ext.web.RoutingContext;
 
+import java.time.format.DateTimeParseException;
+
 @Singleton
 public class ReservationController {
 
-    private EventBus eventBus;
     private HttpService httpService;
 
     @Inject
-    public ReservationController(EventBus eventBus, HttpService httpService) {
-        this.eventBus = eventBus;
+    public ReservationController(HttpService httpService) {
         this.httpService = httpService;
     }
 
@@ -34,9 +34,15 @@ public class ReservationController {
         String end = queryParams.get("end");
 
         if (start != null && end != null) {
-            JsonObject params = new JsonObject().put("start", start).put("end", end);
+            ReservationQuery params;
+            try {
+                params = ReservationQuery.ofDays(start, end);
+            } catch (DateTimeParseException e) {
+                routingContext.fail(HttpStatus.BAD_REQUEST);
+                return;
+            }
 
-            eventBus.send(GateKeeperInfo.NAME + GateKeeperInfo.GET_RESERVATIONS_RANGE, params,
+            httpService.send(routingContext, GateKeeperInfo.NAME + GateKeeperInfo.GET_RESERVATIONS_RANGE, params,
                     response -> httpService.simpleHttpResponseWithBody(routingContext, response));
         } else {
             routingContext.fail(HttpStatus.BAD_REQUEST);
@@ -47,7 +53,7 @@ public class ReservationController {
         String username = httpService.getUsernameFromToken(routingContext);
         JsonObject params = new JsonObject().put("username", username);
 
-        eventBus.send(GateKeeperInfo.NAME + GateKeeperInfo.GET_RESERVATIONS_USER, params,
+        httpService.send(routingContext, GateKeeperInfo.NAME + GateKeeperInfo.GET_RESERVATIONS_USER, params,
                 response -> httpService.simpleHttpResponseWithBody(routingContext, response));
     }
 
@@ -57,7 +63,7 @@ public class ReservationController {
         params.put("body", routingContext.getBodyAsJson());
         params.put("username", username);
 
-        eventBus.send(GateKeeperInfo.NAME + GateKeeperInfo.CREATE_RESERVATION, params,
+        httpService.send(routingContext, GateKeeperInfo.NAME + GateKeeperInfo.CREATE_RESERVATION, params,
                 response -> {
                     if (response.succeeded()) {
                         String contentLocation = httpService.getBaseUrl(routingContext.request()) +
@@ -82,7 +88,7 @@ public class ReservationController {
             params.put("admin", result.succeeded() && result.result());
             params.put("reservationId", Integer.parseInt(routingContext.pathParam("id")));
             params.put("username", username);
-            eventBus.send(GateKeeperInfo.NAME + GateKeeperInfo.CANCEL_RESERVATION, params,
+            httpService.send(routingContext, GateKeeperInfo.NAME + GateKeeperInfo.CANCEL_RESERVATION, params,
                     response -> httpService.simpleHttpResponse(routingContext, response));
         });
 
@@ -94,7 +100,7 @@ public class ReservationController {
             if (result.succeeded() && result.result()) {
                 JsonObject params = new JsonObject();
                 params.put("reservationId", Integer.parseInt(routingContext.pathParam("id")));
-                eventBus.send(GateKeeperInfo.NAME + GateKeeperInfo.COMPLETE_RESERVATION, params,
+                httpService.send(routingContext, GateKeeperInfo.NAME + GateKeeperInfo.COMPLETE_RESERVATION, params,
                         response -> httpService.simpleHttpResponse(routingContext, response));
             } else {
                 routingContext.fail(HttpStatus.FORBIDDEN);
@@ -103,7 +109,7 @@ public class ReservationController {
     }
 
     public void getAactualReservation(RoutingContext routingContext) {
-        eventBus.send(GateKeeperInfo.NAME + GateKeeperInfo.GET_ACTUAL_RESERVATION, null,
+        httpService.send(routingContext, GateKeeperInfo.NAME + GateKeeperInfo.GET_ACTUAL_RESERVATION, null,
                 response -> httpService.simpleHttpResponseWithBody(routingContext, response));
     }
 }
@@ -4,23 +4,32 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import info.ciclope.wotgate.http.HttpHeader;
 import info.ciclope.wotgate.http.HttpStatus;
-import io.vertx.core.Vertx;
+import info.ciclope.wotgate.http.SecurityCameraImage;
+import info.ciclope.wotgate.http.SecurityCameraImageCache;
+import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
-import io.vertx.core.file.FileSystem;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Singleton
 public class SecurityCameraController {
-    private static final String EXTERNAL_CAMERA = "cameras/external.jpg";
-    private static final String INTERNAL_CAMERA = "cameras/internal%s.jpg";
+    private static final String EXTERNAL_CAMERA = SecurityCameraImageCache.CAMERAS_DIRECTORY + "/external.jpg";
+    private static final String INTERNAL_CAMERA = SecurityCameraImageCache.CAMERAS_DIRECTORY + "/internal%s.jpg";
+
+    private static final String STREAM_BOUNDARY = "frame";
+    private static final Buffer STREAM_PART_END = Buffer.buffer("\r\n");
 
-    private FileSystem fs;
+    private SecurityCameraImageCache imageCache;
+    private final Map<String, StreamFrame> streamFrames;
 
     @Inject
-    public SecurityCameraController(Vertx vertx) {
-        this.fs = vertx.fileSystem();
+    public SecurityCameraController(SecurityCameraImageCache imageCache) {
+        this.imageCache = imageCache;
+        this.streamFrames = new HashMap<>();
     }
 
     public void externalCamera(RoutingContext routingContext) {
@@ -32,16 +41,125 @@ public class SecurityCameraController {
         getImage(routingContext, imgPath);
     }
 
+    public void externalCameraStream(RoutingContext routingContext) {
+        streamImage(routingContext, EXTERNAL_CAMERA);
+    }
+
+    public void internalCameraStream(RoutingContext routingContext) {
+        String imgPath = String.format(INTERNAL_CAMERA, routingContext.pathParam("id"));
+        streamImage(routingContext, imgPath);
+    }
+
     private void getImage(RoutingContext routingContext, String imgPath) {
-        // Check if image exists
-        if (fs.existsBlocking(imgPath)) {
-            Buffer buffer = fs.readFileBlocking(imgPath);
+        imageCache.getImage(imgPath, result -> {
+            if (result.failed()) {
+                routingContext.fail(HttpStatus.RESOURCE_NOT_FOUND);
+                return;
+            }
+
+            SecurityCameraImage image = result.result();
             HttpServerResponse response = routingContext.response();
-            response.putHeader(HttpHeaders.CONTENT_TYPE, HttpHeader.CONTENT_TYPE_IMAGE);
-            response.end(buffer);
-        } else {
-            routingContext.fail(HttpStatus.RESOURCE_NOT_FOUND);
+            response.putHeader(HttpHeader.ETAG, image.getEtag());
+            response.putHeader(HttpHeader.LAST_MODIFIED, image.getLastModifiedHeader());
+            response.putHeader(HttpHeader.CACHE_CONTROL, HttpHeader.CACHE_CONTROL_NO_CACHE);
+
+            if (image.isNotModified(routingContext.request())) {
+                response.setStatusCode(HttpStatus.NOT_MODIFIED);
+                response.end();
+            } else if (image.getBody() != null) {
+                response.putHeader(HttpHeaders.CONTENT_TYPE, HttpHeader.CONTENT_TYPE_IMAGE);
+                response.end(image.getBody());
+            } else {
+                // Image not kept in memory, let the kernel copy it from the file
+                response.putHeader(HttpHeaders.CONTENT_TYPE, HttpHeader.CONTENT_TYPE_IMAGE);
+                response.sendFile(image.getPath(), sent -> {
+                    if (sent.failed() && !response.headWritten()) {
+                        routingContext.fail(HttpStatus.RESOURCE_NOT_FOUND);
+                    }
+                });
+            }
+        });
+    }
+
+    private void streamImage(RoutingContext routingContext, String imgPath) {
+        imageCache.getImage(imgPath, result -> {
+            if (result.failed()) {
+                routingContext.fail(HttpStatus.RESOURCE_NOT_FOUND);
+                return;
+            }
+
+            HttpServerResponse response = routingContext.response();
+            response.setChunked(true);
+            response.putHeader(HttpHeaders.CONTENT_TYPE, HttpHeader.CONTENT_TYPE_MULTIPART_REPLACE + STREAM_BOUNDARY);
+            response.putHeader(HttpHeader.CACHE_CONTROL, HttpHeader.CACHE_CONTROL_NO_CACHE);
+
+            StreamViewer viewer = new StreamViewer(response);
+            imageCache.addImageHandler(imgPath, viewer);
+            response.closeHandler(closed -> imageCache.removeImageHandler(imgPath, viewer));
+
+            if (result.result().getBody() != null) {
+                viewer.handle(result.result());
+            }
+        });
+    }
+
+    /**
+     * Returns the multipart frame of an image, building its part header only once for all the viewers.
+     */
+    private StreamFrame getStreamFrame(SecurityCameraImage image) {
+        StreamFrame frame = streamFrames.get(image.getPath());
+        if (frame == null || frame.image != image) {
+            frame = new StreamFrame(image);
+            streamFrames.put(image.getPath(), frame);
+        }
+
+        return frame;
+    }
+
+    private static class StreamFrame {
+        private final SecurityCameraImage image;
+        private final Buffer partHeader;
+
+        private StreamFrame(SecurityCameraImage image) {
+            this.image = image;
+            this.partHeader = Buffer.buffer("--" + STREAM_BOUNDARY + "\r\n" +
+                    HttpHeader.CONTENT_TYPE + ": " + HttpHeader.CONTENT_TYPE_IMAGE + "\r\n" +
+                    "Content-Length: " + image.getBody().length() + "\r\n\r\n");
         }
     }
 
+    private class StreamViewer implements Handler<SecurityCameraImage> {
+        private final HttpServerResponse response;
+        private SecurityCameraImage pendingImage;
+        private boolean draining;
+
+        private StreamViewer(HttpServerResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void handle(SecurityCameraImage image) {
+            if (draining || response.writeQueueFull()) {
+                // Slow viewer, skip frames until drained and then send the latest one
+                pendingImage = image;
+                if (!draining) {
+                    draining = true;
+                    response.drainHandler(drained -> {
+                        draining = false;
+                        SecurityCameraImage latestImage = pendingImage;
+                        pendingImage = null;
+                        if (latestImage != null) {
+                            handle(latestImage);
+                        }
+                    });
+                }
+                return;
+            }
+
+            StreamFrame frame = getStreamFrame(image);
+            response.write(frame.partHeader);
+            response.write(image.getBody());
+            response.write(STREAM_PART_END);
+        }
+    }
 }
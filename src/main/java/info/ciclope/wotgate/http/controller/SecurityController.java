@@ -8,7 +8,6 @@ import info.ciclope.wotgate.http.HttpService;
 import info.ciclope.wotgate.thing.gatekeeper.GateKeeperInfo;
 import info.ciclope.wotgate.thing.gatekeeper.model.AuthorityName;
 import io.vertx.core.AsyncResult;
-import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.eventbus.ReplyException;
 import io.vertx.core.http.HttpServerResponse;
@@ -19,22 +18,20 @@ import io.vertx.ext.web.RoutingContext;
 @Singleton
 public class SecurityController {
 
-    private EventBus eventBus;
     private HttpService httpService;
 
     @Inject
-    public SecurityController(EventBus eventBus, HttpService httpService) {
-        this.eventBus = eventBus;
+    public SecurityController(HttpService httpService) {
         this.httpService = httpService;
     }
 
     public void login(RoutingContext routingContext) {
-        eventBus.send(GateKeeperInfo.NAME + GateKeeperInfo.LOGIN, routingContext.getBodyAsJson(),
+        httpService.send(routingContext, GateKeeperInfo.NAME + GateKeeperInfo.LOGIN, routingContext.getBodyAsJson(),
                 response -> simpleHttpResponse(routingContext, response));
     }
 
     public void register(RoutingContext routingContext) {
-        eventBus.send(GateKeeperInfo.NAME + GateKeeperInfo.REGISTER, routingContext.getBodyAsJson(),
+        httpService.send(routingContext, GateKeeperInfo.NAME + GateKeeperInfo.REGISTER, routingContext.getBodyAsJson(),
                 (AsyncResult<Message<Integer>> response) -> {
                     if (response.succeeded()) {
                         String contentLocation = httpService.getBaseUrl(routingContext.request()) +
@@ -57,7 +54,7 @@ public class SecurityController {
             if (result.succeeded() && result.result()) {
                 JsonObject params = new JsonObject().put("id", Integer.parseInt(routingContext.pathParam("id")));
 
-                eventBus.send(GateKeeperInfo.NAME + GateKeeperInfo.ACTIVATE_USER, params,
+                httpService.send(routingContext, GateKeeperInfo.NAME + GateKeeperInfo.ACTIVATE_USER, params,
                         response -> httpService.simpleHttpResponse(routingContext, response));
             } else {
                 routingContext.fail(HttpStatus.FORBIDDEN);
@@ -69,7 +66,7 @@ public class SecurityController {
         String username = httpService.getUsernameFromToken(routingContext);
         JsonObject params = new JsonObject().put("username", username);
 
-        eventBus.send(GateKeeperInfo.NAME + GateKeeperInfo.GET_USER, params,
+        httpService.send(routingContext, GateKeeperInfo.NAME + GateKeeperInfo.GET_USER, params,
                 response -> simpleHttpResponse(routingContext, response));
     }
 
@@ -77,7 +74,7 @@ public class SecurityController {
         User user = routingContext.user();
         user.isAuthorized(AuthorityName.ROLE_ADMIN, result -> {
             if (result.succeeded() && result.result()) {
-                eventBus.send(GateKeeperInfo.NAME + GateKeeperInfo.GET_ALL_USERS, null,
+                httpService.send(routingContext, GateKeeperInfo.NAME + GateKeeperInfo.GET_ALL_USERS, null,
                         response -> simpleHttpResponse(routingContext, response));
             } else {
                 routingContext.fail(HttpStatus.FORBIDDEN);
@@ -0,0 +1,217 @@
+package info.ciclope.wotgate.http.controller;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import info.ciclope.wotgate.http.HttpHeader;
+import info.ciclope.wotgate.http.HttpStatus;
+import info.ciclope.wotgate.thing.StatusSnapshot;
+import info.ciclope.wotgate.thing.StatusSnapshotStore;
+import info.ciclope.wotgate.thing.dome.DomeInfo;
+import info.ciclope.wotgate.thing.mount.MountInfo;
+import info.ciclope.wotgate.thing.weatherstation.WeatherStationInfo;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.streams.WriteStream;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.*;
+
+/**
+ * Pushes the status changes of the things to clients subscribed through Server-Sent Events or WebSocket. Each
+ * change is formatted once and shared by all the subscribers. A subscriber whose connection can't keep up only
+ * receives the latest status of every thing once it drains, the intermediate ones are dropped.
+ */
+@Singleton
+public class StatusStreamController {
+    private static final List<String> STREAMABLE_THINGS = Arrays.asList(
+            DomeInfo.NAME, MountInfo.NAME, WeatherStationInfo.NAME);
+    private static final long HEARTBEAT_INTERVAL = 30000; // 30 seconds
+    private static final Buffer SSE_HEARTBEAT = Buffer.buffer(":\n\n");
+
+    private Vertx vertx;
+    private StatusSnapshotStore statusSnapshotStore;
+
+    private final Map<String, Set<Subscriber>> subscribers;
+    private final Map<String, Frame> frames;
+    private long heartbeatTimerId = -1;
+
+    @Inject
+    public StatusStreamController(Vertx vertx, StatusSnapshotStore statusSnapshotStore) {
+        this.vertx = vertx;
+        this.statusSnapshotStore = statusSnapshotStore;
+        this.subscribers = new HashMap<>();
+        this.frames = new HashMap<>();
+    }
+
+    public void events(RoutingContext routingContext) {
+        Set<String> things = getRequestedThings(routingContext);
+        if (things.isEmpty()) {
+            routingContext.fail(HttpStatus.BAD_REQUEST);
+            return;
+        }
+
+        HttpServerResponse response = routingContext.response();
+        response.setChunked(true);
+        response.putHeader(HttpHeader.CONTENT_TYPE, HttpHeader.CONTENT_TYPE_EVENT_STREAM);
+        response.putHeader(HttpHeader.CACHE_CONTROL, HttpHeader.CACHE_CONTROL_NO_CACHE);
+        response.write(SSE_HEARTBEAT);
+
+        Subscriber subscriber = new Subscriber(response, false);
+        response.closeHandler(closed -> unsubscribe(subscriber));
+        subscribe(subscriber, things);
+    }
+
+    public void socket(RoutingContext routingContext) {
+        Set<String> things = getRequestedThings(routingContext);
+        if (things.isEmpty()) {
+            routingContext.fail(HttpStatus.BAD_REQUEST);
+            return;
+        }
+
+        ServerWebSocket webSocket = routingContext.request().upgrade();
+        Subscriber subscriber = new Subscriber(webSocket, true);
+        webSocket.closeHandler(closed -> unsubscribe(subscriber));
+        subscribe(subscriber, things);
+    }
+
+    private Set<String> getRequestedThings(RoutingContext routingContext) {
+        String thingsParam = routingContext.request().getParam("things");
+        if (thingsParam == null) {
+            return new LinkedHashSet<>(STREAMABLE_THINGS);
+        }
+
+        Set<String> things = new LinkedHashSet<>();
+        for (String thing : thingsParam.split(",")) {
+            if (!STREAMABLE_THINGS.contains(thing.trim())) {
+                return Collections.emptySet();
+            }
+            things.add(thing.trim());
+        }
+
+        return things;
+    }
+
+    private void subscribe(Subscriber subscriber, Set<String> things) {
+        subscriber.things.addAll(things);
+        for (String thing : things) {
+            subscribers.computeIfAbsent(thing, name -> {
+                vertx.eventBus().consumer(name + StatusSnapshotStore.STATUS_CHANGED, message -> onStatusChanged(name));
+                return new LinkedHashSet<>();
+            }).add(subscriber);
+
+            // Start with the current status
+            subscriber.offer(thing);
+        }
+
+        if (heartbeatTimerId == -1) {
+            heartbeatTimerId = vertx.setPeriodic(HEARTBEAT_INTERVAL, timer -> sendHeartbeats());
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscriber.things.forEach(thing -> subscribers.get(thing).remove(subscriber));
+    }
+
+    private void onStatusChanged(String thing) {
+        subscribers.get(thing).forEach(subscriber -> subscriber.offer(thing));
+    }
+
+    private void sendHeartbeats() {
+        Set<Subscriber> eventSubscribers = new HashSet<>();
+        subscribers.values().forEach(eventSubscribers::addAll);
+        eventSubscribers.stream()
+                .filter(subscriber -> !subscriber.webSocket && !subscriber.stream.writeQueueFull())
+                .forEach(subscriber -> subscriber.stream.write(SSE_HEARTBEAT));
+    }
+
+    /**
+     * Returns the frame of the latest status of a thing, formatting it only the first time it is requested.
+     */
+    private Frame getFrame(String thing) {
+        StatusSnapshot snapshot = statusSnapshotStore.get(thing);
+        if (snapshot == null) {
+            return null;
+        }
+
+        Frame frame = frames.get(thing);
+        if (frame == null || frame.version != snapshot.getVersion()) {
+            frame = new Frame(snapshot);
+            frames.put(thing, frame);
+        }
+
+        return frame;
+    }
+
+    private static class Frame {
+        private final long version;
+        private final Buffer event;
+        private final String message;
+
+        private Frame(StatusSnapshot snapshot) {
+            String body = snapshot.getBody().toString();
+            this.version = snapshot.getVersion();
+            this.event = Buffer.buffer("event: " + snapshot.getThingName() + "\n" +
+                    "id: " + snapshot.getVersion() + "\n" +
+                    "data: " + body + "\n\n");
+            this.message = "{\"thing\":\"" + snapshot.getThingName() + "\"," +
+                    "\"version\":" + snapshot.getVersion() + "," +
+                    "\"status\":" + body + "}";
+        }
+    }
+
+    private class Subscriber {
+        private final WriteStream<Buffer> stream;
+        private final boolean webSocket;
+        private final Set<String> things;
+        private final Set<String> pending;
+        private boolean draining;
+        private boolean closed;
+
+        private Subscriber(WriteStream<Buffer> stream, boolean webSocket) {
+            this.stream = stream;
+            this.webSocket = webSocket;
+            this.things = new HashSet<>();
+            this.pending = new LinkedHashSet<>();
+        }
+
+        private void offer(String thing) {
+            if (closed) {
+                return;
+            }
+
+            if (draining || stream.writeQueueFull()) {
+                // Slow consumer, only the latest status will be sent once drained
+                pending.add(thing);
+                if (!draining) {
+                    draining = true;
+                    stream.drainHandler(drained -> flush());
+                }
+            } else {
+                write(thing);
+            }
+        }
+
+        private void flush() {
+            draining = false;
+            List<String> thingsToSend = new ArrayList<>(pending);
+            pending.clear();
+            thingsToSend.forEach(this::offer);
+        }
+
+        private void write(String thing) {
+            Frame frame = getFrame(thing);
+            if (frame == null) {
+                return;
+            }
+
+            if (webSocket) {
+                ((ServerWebSocket) stream).writeTextMessage(frame.message);
+            } else {
+                stream.write(frame.event);
+            }
+        }
+    }
+}
@@ -2,27 +2,34 @@ package info.ciclope.wotgate.http.controller;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import info.ciclope.wotgate.http.HttpService;
+import info.ciclope.wotgate.thing.StatusSnapshot;
+import info.ciclope.wotgate.thing.StatusSnapshotStore;
 import info.ciclope.wotgate.thing.weatherstation.WeatherStationInfo;
-import io.vertx.core.eventbus.EventBus;
-import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
 
 @Singleton
 public class WeatherstationController {
 
-    private EventBus eventBus;
+    private HttpService httpService;
+    private StatusSnapshotStore statusSnapshotStore;
 
     @Inject
-    public WeatherstationController(EventBus eventBus) {
-        this.eventBus = eventBus;
+    public WeatherstationController(HttpService httpService, StatusSnapshotStore statusSnapshotStore) {
+        this.httpService = httpService;
+        this.statusSnapshotStore = statusSnapshotStore;
     }
 
     public void getState(RoutingContext routingContext) {
-        eventBus.send(WeatherStationInfo.NAME + WeatherStationInfo.STATUS, null, response -> {
+        StatusSnapshot snapshot = statusSnapshotStore.get(WeatherStationInfo.NAME);
+        if (snapshot != null) {
+            httpService.snapshotHttpResponse(routingContext, snapshot);
+            return;
+        }
+
+        httpService.send(routingContext, WeatherStationInfo.NAME + WeatherStationInfo.STATUS, null, response -> {
             if (response.succeeded()) {
-                HttpServerResponse httpServerResponse = routingContext.response();
-                httpServerResponse.putHeader("content-type", "application/json; charset=utf-8");
-                httpServerResponse.end(response.result().body().toString());
+                httpService.bodyHttpResponse(routingContext, response.result().body());
             } else {
                 response.cause().printStackTrace();
                 routingContext.fail(400);
@@ -30,4 +37,7 @@ public class WeatherstationController {
         });
     }
 
+    public void getHistory(RoutingContext routingContext) {
+        httpService.historyHttpResponse(routingContext, WeatherStationInfo.NAME + WeatherStationInfo.HISTORY);
+    }
 }
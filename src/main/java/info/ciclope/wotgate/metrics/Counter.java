@@ -0,0 +1,36 @@
+package info.ciclope.wotgate.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter extends MetricFamily<Counter.Child> {
+
+    Counter(String name, String help, String[] labelNames) {
+        super(name, help, "counter", labelNames);
+    }
+
+    @Override
+    Child newChild() {
+        return new Child();
+    }
+
+    @Override
+    void writeChild(StringBuilder builder, String labels, Child child) {
+        writeSample(builder, getName(), labels, child.get());
+    }
+
+    public static class Child {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void increment(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+}
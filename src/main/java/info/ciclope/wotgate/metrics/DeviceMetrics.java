@@ -0,0 +1,145 @@
+package info.ciclope.wotgate.metrics;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of the communication with the devices, through RabbitMQ or their HTTP APIs.
+ */
+@Singleton
+public class DeviceMetrics {
+    private final Counter rabbitPublished;
+    private final Histogram rabbitConfirmDuration;
+    private final Counter rabbitBatches;
+    private final Gauge rabbitUnconfirmed;
+    private final Counter rabbitConsumed;
+    private final Counter statusSamplesDropped;
+    private final Counter invalidMessages;
+    private final Histogram webClientDuration;
+    private final Gauge pollInterval;
+    private final Counter commandsReceived;
+    private final Counter commandsDispatched;
+    private final Gauge commandQueueDepth;
+    private final Histogram actuationDuration;
+    private final Gauge pendingActuations;
+    private final Counter connectionAttempts;
+    private final Gauge connected;
+
+    @Inject
+    public DeviceMetrics(MetricsRegistry metricsRegistry) {
+        this.rabbitPublished = metricsRegistry.counter("wotgate_rabbitmq_published_total",
+                "Messages published to RabbitMQ, by exchange and outcome of their confirmation.", "exchange",
+                "outcome");
+        this.rabbitConfirmDuration = metricsRegistry.histogram("wotgate_rabbitmq_confirm_duration_seconds",
+                "Time from the publication of a message to its confirmation by the broker, by exchange and outcome.",
+                "exchange", "outcome");
+        this.rabbitBatches = metricsRegistry.counter("wotgate_rabbitmq_publish_batches_total",
+                "Batches of messages published to RabbitMQ together, by exchange.", "exchange");
+        this.rabbitUnconfirmed = metricsRegistry.gauge("wotgate_rabbitmq_unconfirmed_messages",
+                "Messages queued or waiting for their confirmation, by exchange.", "exchange");
+        this.rabbitConsumed = metricsRegistry.counter("wotgate_rabbitmq_consumed_total",
+                "Messages consumed from RabbitMQ, by queue.", "queue");
+        this.statusSamplesDropped = metricsRegistry.counter("wotgate_device_status_samples_dropped_total",
+                "Status messages of the devices replaced by a later one before updating their status, by device.",
+                "device");
+        this.invalidMessages = metricsRegistry.counter("wotgate_device_invalid_messages_total",
+                "Messages of the devices that could not be decoded, by device.", "device");
+        this.webClientDuration = metricsRegistry.histogram("wotgate_webclient_request_duration_seconds",
+                "Latency of the requests to the device APIs, by client and outcome.", "client", "outcome");
+        this.pollInterval = metricsRegistry.gauge("wotgate_device_poll_interval_seconds",
+                "Time until the next poll of the device APIs, by device.", "device");
+        this.commandsReceived = metricsRegistry.counter("wotgate_device_commands_received_total",
+                "Commands received for the devices, by device and command.", "device", "command");
+        this.commandsDispatched = metricsRegistry.counter("wotgate_device_commands_dispatched_total",
+                "Commands sent to the devices after merging the received ones, by device and command.", "device",
+                "command");
+        this.commandQueueDepth = metricsRegistry.gauge("wotgate_device_command_queue_depth",
+                "Commands waiting to be sent to the devices.", "device");
+        this.actuationDuration = metricsRegistry.histogram("wotgate_device_actuation_duration_seconds",
+                "Time from a command to its execution by the device, by device, command and outcome.", "device",
+                "command", "outcome");
+        this.pendingActuations = metricsRegistry.gauge("wotgate_device_pending_actuations",
+                "Commands sent to the devices and not executed yet.", "device");
+        this.connectionAttempts = metricsRegistry.counter("wotgate_device_connection_attempts_total",
+                "Attempts to connect to the devices, by device and outcome.", "device", "outcome");
+        this.connected = metricsRegistry.gauge("wotgate_device_connected", "Whether each device is connected.",
+                "device");
+    }
+
+    /**
+     * Records the confirmation of a message published at the given {@link System#nanoTime()}, or its failure.
+     */
+    public void rabbitConfirmed(String exchange, long start, boolean acknowledged) {
+        rabbitPublished.labels(exchange, getOutcome(acknowledged)).increment();
+        rabbitConfirmDuration.labels(exchange, getOutcome(acknowledged)).observeSince(start);
+    }
+
+    public void rabbitBatchPublished(String exchange) {
+        rabbitBatches.labels(exchange).increment();
+    }
+
+    public void unconfirmedMessages(String exchange, Supplier<Integer> unconfirmed) {
+        rabbitUnconfirmed.labels(exchange).set(unconfirmed);
+    }
+
+    public void rabbitConsumed(String queue) {
+        rabbitConsumed.labels(queue).increment();
+    }
+
+    public void statusSampleDropped(String device) {
+        statusSamplesDropped.labels(device).increment();
+    }
+
+    public void invalidMessage(String device) {
+        invalidMessages.labels(device).increment();
+    }
+
+    /**
+     * Records a request to a device API started at the given {@link System#nanoTime()}.
+     */
+    public void webClientRequest(String client, long start, boolean succeeded) {
+        webClientDuration.labels(client, getOutcome(succeeded)).observeSince(start);
+    }
+
+    public void pollInterval(String device, Supplier<Double> interval) {
+        pollInterval.labels(device).set(interval);
+    }
+
+    public void commandReceived(String device, String command) {
+        commandsReceived.labels(device, command).increment();
+    }
+
+    public void commandDispatched(String device, String command) {
+        commandsDispatched.labels(device, command).increment();
+    }
+
+    public void commandQueueDepth(String device, Supplier<Integer> depth) {
+        commandQueueDepth.labels(device).set(depth);
+    }
+
+    /**
+     * Records the execution of a command sent at the given {@link System#nanoTime()}, its failure or its timeout.
+     */
+    public void actuation(String device, String command, String outcome, long start) {
+        actuationDuration.labels(device, command, outcome).observeSince(start);
+    }
+
+    public void pendingActuations(String device, Supplier<Integer> pending) {
+        pendingActuations.labels(device).set(pending);
+    }
+
+    public void connectionAttempt(String device, boolean succeeded) {
+        connectionAttempts.labels(device, getOutcome(succeeded)).increment();
+    }
+
+    public void connectionState(String device, BooleanSupplier isConnected) {
+        connected.labels(device).set(() -> isConnected.getAsBoolean() ? 1 : 0);
+    }
+
+    private String getOutcome(boolean succeeded) {
+        return succeeded ? "success" : "failure";
+    }
+}
@@ -0,0 +1,35 @@
+package info.ciclope.wotgate.metrics;
+
+import java.util.function.Supplier;
+
+/**
+ * Gauge whose value is read from a supplier when the metrics are scraped.
+ */
+public class Gauge extends MetricFamily<Gauge.Child> {
+
+    Gauge(String name, String help, String[] labelNames) {
+        super(name, help, "gauge", labelNames);
+    }
+
+    @Override
+    Child newChild() {
+        return new Child();
+    }
+
+    @Override
+    void writeChild(StringBuilder builder, String labels, Child child) {
+        writeSample(builder, getName(), labels, child.get());
+    }
+
+    public static class Child {
+        private volatile Supplier<? extends Number> supplier = () -> 0;
+
+        public void set(Supplier<? extends Number> supplier) {
+            this.supplier = supplier;
+        }
+
+        public double get() {
+            return supplier.get().doubleValue();
+        }
+    }
+}
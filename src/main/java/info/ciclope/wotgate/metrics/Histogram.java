@@ -0,0 +1,67 @@
+package info.ciclope.wotgate.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Histogram extends MetricFamily<Histogram.Child> {
+    private final double[] buckets;
+
+    Histogram(String name, String help, double[] buckets, String[] labelNames) {
+        super(name, help, "histogram", labelNames);
+        this.buckets = buckets;
+    }
+
+    @Override
+    Child newChild() {
+        return new Child(buckets);
+    }
+
+    @Override
+    void writeChild(StringBuilder builder, String labels, Child child) {
+        String separator = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += child.bucketCounts[i].sum();
+            writeSample(builder, getName() + "_bucket", separator + "le=\"" + buckets[i] + "\"", cumulative);
+        }
+        writeSample(builder, getName() + "_bucket", separator + "le=\"+Inf\"", child.count.sum());
+        writeSample(builder, getName() + "_sum", labels, child.sum.sum());
+        writeSample(builder, getName() + "_count", labels, child.count.sum());
+    }
+
+    public static class Child {
+        private final double[] buckets;
+        private final LongAdder[] bucketCounts;
+        private final LongAdder count;
+        private final DoubleAdder sum;
+
+        private Child(double[] buckets) {
+            this.buckets = buckets;
+            this.bucketCounts = new LongAdder[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                bucketCounts[i] = new LongAdder();
+            }
+            this.count = new LongAdder();
+            this.sum = new DoubleAdder();
+        }
+
+        public void observe(double value) {
+            for (int i = 0; i < buckets.length; i++) {
+                if (value <= buckets[i]) {
+                    bucketCounts[i].increment();
+                    break;
+                }
+            }
+            count.increment();
+            sum.add(value);
+        }
+
+        /**
+         * Observes the seconds elapsed since a {@link System#nanoTime()} start.
+         */
+        public void observeSince(long startNanoTime) {
+            observe((System.nanoTime() - startNanoTime) / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package info.ciclope.wotgate.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metric with a name and a fixed set of label names. It has one child per combination of label values.
+ */
+public abstract class MetricFamily<T> {
+    private final String name;
+    private final String help;
+    private final String type;
+    private final String[] labelNames;
+    private final Map<List<String>, T> children;
+
+    MetricFamily(String name, String help, String type, String[] labelNames) {
+        this.name = name;
+        this.help = help;
+        this.type = type;
+        this.labelNames = labelNames;
+        this.children = new ConcurrentHashMap<>();
+    }
+
+    public T labels(String... labelValues) {
+        if (labelValues.length != labelNames.length) {
+            throw new IllegalArgumentException("Metric " + name + " needs " + labelNames.length + " label values");
+        }
+
+        return children.computeIfAbsent(Arrays.asList(labelValues), values -> newChild());
+    }
+
+    abstract T newChild();
+
+    abstract void writeChild(StringBuilder builder, String labels, T child);
+
+    void write(StringBuilder builder) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        children.forEach((labelValues, child) -> writeChild(builder, formatLabels(labelValues), child));
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Formats the labels as the comma separated content of the braces, without them.
+     */
+    private String formatLabels(List<String> labelValues) {
+        StringBuilder labels = new StringBuilder();
+        for (int i = 0; i < labelNames.length; i++) {
+            if (i > 0) {
+                labels.append(',');
+            }
+            String value = labelValues.get(i) == null ? "" : labelValues.get(i);
+            labels.append(labelNames[i]).append("=\"")
+                    .append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+
+        return labels.toString();
+    }
+
+    static void writeSample(StringBuilder builder, String name, String labels, double value) {
+        builder.append(name);
+        if (!labels.isEmpty()) {
+            builder.append('{').append(labels).append('}');
+        }
+        builder.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            builder.append((long) value);
+        } else {
+            builder.append(value);
+        }
+        builder.append('\n');
+    }
+}
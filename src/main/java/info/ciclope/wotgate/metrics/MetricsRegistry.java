@@ -0,0 +1,40 @@
+package info.ciclope.wotgate.metrics;
+
+import com.google.inject.Singleton;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Registry of the gateway metrics, exported in the Prometheus text format. Registering a metric twice returns the
+ * already registered one, so components may register their metrics without coordination.
+ */
+@Singleton
+public class MetricsRegistry {
+    public static final double[] LATENCY_BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private final Map<String, MetricFamily<?>> families;
+
+    public MetricsRegistry() {
+        this.families = new ConcurrentSkipListMap<>();
+    }
+
+    public Counter counter(String name, String help, String... labelNames) {
+        return (Counter) families.computeIfAbsent(name, key -> new Counter(name, help, labelNames));
+    }
+
+    public Gauge gauge(String name, String help, String... labelNames) {
+        return (Gauge) families.computeIfAbsent(name, key -> new Gauge(name, help, labelNames));
+    }
+
+    public Histogram histogram(String name, String help, String... labelNames) {
+        return (Histogram) families.computeIfAbsent(name, key -> new Histogram(name, help, LATENCY_BUCKETS, labelNames));
+    }
+
+    public String scrape() {
+        StringBuilder builder = new StringBuilder();
+        families.values().forEach(family -> family.write(builder));
+
+        return builder.toString();
+    }
+}
@@ -54,6 +54,8 @@ public interface DatabaseStorage {
 
     void executeBatch(Integer connection, List<String> batch, Handler<AsyncResult<Void>> result);
 
+    void executeBatchWithParameters(Integer connection, String update, List<JsonArray> batch, Handler<AsyncResult<Void>> result);
+
     void stopSimpleConnection(Integer connection, Handler<AsyncResult<Void>> result);
 
     void startTransactionConnection(Handler<AsyncResult<Integer>> result);
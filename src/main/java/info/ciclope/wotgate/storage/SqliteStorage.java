@@ -17,6 +17,9 @@
 package info.ciclope.wotgate.storage;
 
 import info.ciclope.wotgate.ErrorCode;
+import info.ciclope.wotgate.metrics.Counter;
+import info.ciclope.wotgate.metrics.Histogram;
+import info.ciclope.wotgate.metrics.MetricsRegistry;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -28,17 +31,30 @@ import io.vertx.ext.sql.ResultSet;
 import io.vertx.ext.sql.SQLConnection;
 import io.vertx.ext.sql.UpdateResult;
 
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SqliteStorage implements DatabaseStorage {
+    private static final int BUSY_TIMEOUT = 5000; // 5 seconds
+
     private final Vertx vertx;
     private JDBCClient jdbcClient;
-    private final HashMap<Integer, SQLConnection> sqlConnectionMap;
+    private final Map<Integer, SQLConnection> sqlConnectionMap;
+    private final MetricsRegistry metricsRegistry;
+    private final Histogram operationDuration;
+    private final Counter operationFailures;
+    private String databaseName;
 
-    public SqliteStorage(Vertx vertx) {
+    public SqliteStorage(Vertx vertx, MetricsRegistry metricsRegistry) {
         this.vertx = vertx;
-        sqlConnectionMap = new HashMap<>();
+        this.metricsRegistry = metricsRegistry;
+        sqlConnectionMap = new ConcurrentHashMap<>();
+        operationDuration = metricsRegistry.histogram("wotgate_storage_operation_duration_seconds",
+                "Duration of the database operations, connect being the wait for a pooled connection.",
+                "database", "operation");
+        operationFailures = metricsRegistry.counter("wotgate_storage_operation_failures_total",
+                "Failed database operations.", "database", "operation");
     }
 
     @Override
@@ -48,9 +64,13 @@ public class SqliteStorage implements DatabaseStorage {
         }
 
         JsonObject configuration = new JsonObject()
-                .put("url", "jdbc:sqlite:" + databaseName + ".db")
+                // Several thing instances may write at once, WAL lets them read meanwhile and writers wait their turn
+                .put("url", "jdbc:sqlite:" + databaseName + ".db?journal_mode=WAL&busy_timeout=" + BUSY_TIMEOUT)
                 .put("driver_class", "org.sqlite.JDBC");
         jdbcClient = JDBCClient.createShared(this.vertx, configuration, databaseName);
+        this.databaseName = databaseName;
+        metricsRegistry.gauge("wotgate_storage_open_connections", "Database connections in use.", "database")
+                .labels(databaseName).set(sqlConnectionMap::size);
     }
 
     @Override
@@ -188,7 +208,7 @@ public class SqliteStorage implements DatabaseStorage {
 
     @Override
     public void startSimpleConnection(Handler<AsyncResult<Integer>> result) {
-        jdbcClient.getConnection(connection -> {
+        jdbcClient.getConnection(timed("connect", connection -> {
             if (connection.succeeded()) {
                 connection.result().update("PRAGMA foreign_keys = ON;", update->{
                     if(update.succeeded()) {
@@ -201,7 +221,7 @@ public class SqliteStorage implements DatabaseStorage {
             } else {
                 result.handle(Future.failedFuture(connection.cause()));
             }
-        });
+        }));
     }
 
     @Override
@@ -212,13 +232,13 @@ public class SqliteStorage implements DatabaseStorage {
             return;
         }
 
-        sqlConnection.query(query, queryResult -> {
+        sqlConnection.query(query, timed("query", queryResult -> {
             if (queryResult.succeeded()) {
                 result.handle(Future.succeededFuture(queryResult.result()));
             } else {
                 result.handle(Future.failedFuture(queryResult.cause()));
             }
-        });
+        }));
     }
 
     @Override
@@ -229,13 +249,13 @@ public class SqliteStorage implements DatabaseStorage {
             return;
         }
 
-        sqlConnection.queryWithParams(query, parameters, queryResult -> {
+        sqlConnection.queryWithParams(query, parameters, timed("query", queryResult -> {
             if (queryResult.succeeded()) {
                 result.handle(Future.succeededFuture(queryResult.result()));
             } else {
                 result.handle(Future.failedFuture(queryResult.cause()));
             }
-        });
+        }));
     }
 
     @Override
@@ -246,13 +266,13 @@ public class SqliteStorage implements DatabaseStorage {
             return;
         }
 
-        sqlConnection.update(update, updateResult -> {
+        sqlConnection.update(update, timed("update", updateResult -> {
             if (updateResult.succeeded()) {
                 result.handle(Future.succeededFuture(updateResult.result()));
             } else {
                 result.handle(Future.failedFuture(updateResult.cause()));
             }
-        });
+        }));
     }
 
     @Override
@@ -263,13 +283,13 @@ public class SqliteStorage implements DatabaseStorage {
             return;
         }
 
-        sqlConnection.updateWithParams(update, parameters, updateResult -> {
+        sqlConnection.updateWithParams(update, parameters, timed("update", updateResult -> {
             if (updateResult.succeeded()) {
                 result.handle(Future.succeededFuture(updateResult.result()));
             } else {
                 result.handle(Future.failedFuture(updateResult.cause()));
             }
-        });
+        }));
     }
 
     @Override
@@ -280,13 +300,30 @@ public class SqliteStorage implements DatabaseStorage {
             return;
         }
 
-        sqlConnection.batch(batch, batchResult -> {
+        sqlConnection.batch(batch, timed("batch", batchResult -> {
             if (batchResult.succeeded()) {
                 result.handle(Future.succeededFuture());
             } else {
                 result.handle(Future.failedFuture(batchResult.cause()));
             }
-        });
+        }));
+    }
+
+    @Override
+    public void executeBatchWithParameters(Integer connection, String update, List<JsonArray> batch, Handler<AsyncResult<Void>> result) {
+        SQLConnection sqlConnection = sqlConnectionMap.get(connection);
+        if (sqlConnection == null) {
+            result.handle(Future.failedFuture(new Throwable(ErrorCode.ERROR_NO_SQL_CONNECTION)));
+            return;
+        }
+
+        sqlConnection.batchWithParams(update, batch, timed("batch", batchResult -> {
+            if (batchResult.succeeded()) {
+                result.handle(Future.succeededFuture());
+            } else {
+                result.handle(Future.failedFuture(batchResult.cause()));
+            }
+        }));
     }
 
     @Override
@@ -414,4 +451,14 @@ public class SqliteStorage implements DatabaseStorage {
         });
     }
 
+    private <T> Handler<AsyncResult<T>> timed(String operation, Handler<AsyncResult<T>> handler) {
+        long start = System.nanoTime();
+        return result -> {
+            operationDuration.labels(databaseName, operation).observeSince(start);
+            if (result.failed()) {
+                operationFailures.labels(databaseName, operation).increment();
+            }
+            handler.handle(result);
+        };
+    }
 }
@@ -0,0 +1,248 @@
+package info.ciclope.wotgate.thing;
+
+import com.google.inject.Inject;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import info.ciclope.wotgate.amqp.*;
+import info.ciclope.wotgate.http.HttpStatus;
+import info.ciclope.wotgate.metrics.DeviceMetrics;
+import info.ciclope.wotgate.trace.Trace;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Thing of a device behind RabbitMQ. The thing starts at once and its channel of the shared AMQP connection is opened
+ * in the background, and reopened whenever it is lost.
+ * <p>
+ * Commands are published with a correlation ID and the queue of the device to reply to, and tracked until the device
+ * replies or reports them done in its status.
+ * <p>
+ * The queue of the device is consumed with up to "prefetch" unacknowledged messages, acknowledged in batches. Of the
+ * status messages received within each "statusInterval" only the latest one updates the status of the thing.
+ * The device is inactive when no message is received within "inactiveTime".
+ */
+public abstract class AbstractAmqpThing extends AbstractThing {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractAmqpThing.class);
+    private static final int DEFAULT_PREFETCH = 64;
+    private static final long DEFAULT_STATUS_INTERVAL = 250; // 250 milliseconds
+    private static final long DEFAULT_INACTIVE_TIME = 120000; // 2 minutes
+
+    @Inject
+    private AmqpManager amqpManager;
+
+    @Inject
+    private DeviceMetrics deviceMetrics;
+
+    @Inject
+    private LivenessTracker livenessTracker;
+
+    private DeviceConnection connection;
+    private Channel channel;
+    private ConfirmingPublisher publisher;
+    private BatchAcknowledger acknowledger;
+    private ActuationTracker actuationTracker;
+    private LivenessTracker.Liveness liveness;
+    private int prefetch;
+    private long statusInterval;
+    private long statusTimerId;
+    private byte[] latestStatus;
+
+    @Override
+    public void startThing(Handler<AsyncResult<Void>> handler) {
+        prefetch = config().getInteger("prefetch", DEFAULT_PREFETCH);
+        statusInterval = config().getLong("statusInterval", DEFAULT_STATUS_INTERVAL);
+        statusTimerId = -1;
+        actuationTracker = new ActuationTracker(vertx, getThingName(), deviceMetrics);
+        liveness = livenessTracker.track(getThingName(), config().getLong("inactiveTime", DEFAULT_INACTIVE_TIME),
+                inactive -> deviceInactive());
+        connection = new DeviceConnection(vertx, getThingName(), deviceMetrics, this::openChannel)
+                .stateHandler(this::connectionChanged);
+        startDevice();
+        connection.start();
+        handler.handle(Future.succeededFuture());
+    }
+
+    @Override
+    public void stopThing(Handler<AsyncResult<Void>> handler) {
+        connection.stop();
+        IOException cause = new IOException("Thing stopped");
+        if (channel != null) {
+            publisher.close(cause);
+            acknowledger.close();
+            amqpManager.closeChannel(channel);
+        }
+        actuationTracker.close(cause);
+        livenessTracker.untrack(liveness);
+        if (statusTimerId != -1) {
+            vertx.cancelTimer(statusTimerId);
+        }
+        handler.handle(Future.succeededFuture());
+    }
+
+    /**
+     * Exchange and queue of the device.
+     */
+    protected abstract AmqpTopology getTopology();
+
+    /**
+     * Called before connecting to the device.
+     */
+    protected abstract void startDevice();
+
+    /**
+     * Handles the body of a status message of the device received from its queue.
+     */
+    protected abstract void deviceMessage(byte[] message);
+
+    /**
+     * Called when no message of the device has been received within the inactive time.
+     */
+    protected abstract void deviceInactive();
+
+    protected abstract void connectionChanged(DeviceConnection.State state);
+
+    protected DeviceConnection.State getConnectionState() {
+        return connection.getState();
+    }
+
+    /**
+     * Fails a command with 503 if the device is not connected.
+     */
+    protected boolean rejectIfDisconnected(Message<?> message) {
+        return connection.rejectIfDisconnected(message);
+    }
+
+    /**
+     * Publishes a command to the exchange of the device, replying to the message of the command once the broker
+     * confirms it or, waiting for completion, once the device executes it.
+     */
+    protected void publishCommand(String routingKey, JsonObject command, Actuation actuation, Message<?> message,
+                                  boolean waitForCompletion) {
+        long start = System.nanoTime();
+        Handler<AsyncResult<Void>> replyHandler = result -> {
+            Trace.of(message).addTiming(waitForCompletion ? getThingName() : "rabbitmq", actuation.getCommand(),
+                    start);
+            if (result.succeeded()) {
+                message.reply(null);
+            } else if (result.cause() instanceof TimeoutException) {
+                message.fail(HttpStatus.GATEWAY_TIMEOUT, "Gateway Timeout");
+            } else {
+                message.fail(HttpStatus.INTERNAL_ERROR, "Internal Error");
+            }
+        };
+
+        if (waitForCompletion) {
+            // A failed publication fails the actuation too
+            publishCommand(routingKey, command, actuation.completionHandler(replyHandler), published -> {
+            });
+        } else {
+            publishCommand(routingKey, command, actuation, replyHandler);
+        }
+    }
+
+    /**
+     * Publishes a command to the exchange of the device, completing once the broker confirms it. The execution of the
+     * command is tracked from then on.
+     */
+    protected void publishCommand(String routingKey, JsonObject command, Actuation actuation,
+                                  Handler<AsyncResult<Void>> handler) {
+        String correlationId = actuationTracker.start(actuation);
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+                .correlationId(correlationId)
+                .replyTo(getTopology().getQueue())
+                .build();
+        publisher.publish(routingKey, properties, command.toBuffer().getBytes(), published -> {
+            if (published.failed()) {
+                actuationTracker.cancel(correlationId, published.cause());
+            }
+            handler.handle(published);
+        });
+    }
+
+    private void openChannel(Handler<AsyncResult<Void>> handler) {
+        AmqpTopology topology = getTopology();
+        amqpManager.openChannel(topology, prefetch, this::delivered, this::channelLost, opened -> {
+            if (opened.succeeded()) {
+                channel = opened.result();
+                publisher = new ConfirmingPublisher(vertx, channel, topology.getExchange(), deviceMetrics);
+                acknowledger = new BatchAcknowledger(vertx, channel, Math.max(1, prefetch / 2));
+                handler.handle(Future.succeededFuture());
+            } else {
+                handler.handle(Future.failedFuture(opened.cause()));
+            }
+        });
+    }
+
+    private void channelLost(Throwable cause) {
+        publisher.close(cause);
+        acknowledger.close();
+        connection.lost(cause);
+    }
+
+    private void delivered(AmqpDelivery delivery) {
+        deviceMetrics.rabbitConsumed(getTopology().getQueue());
+        liveness.seen();
+        try {
+            if (delivery.getCorrelationId() != null) {
+                actuationTracker.replied(delivery.getCorrelationId(),
+                        new JsonObject(Buffer.buffer(delivery.getBody())));
+            } else {
+                if (actuationTracker.hasPending()) {
+                    // Only decoded as a JSON object before decimation while some command waits for its status
+                    actuationTracker.status(new JsonObject(Buffer.buffer(delivery.getBody())));
+                }
+                statusReceived(delivery.getBody());
+            }
+        } catch (DecodeException | ClassCastException e) {
+            deviceMetrics.invalidMessage(getThingName());
+            LOGGER.warn("Invalid message of " + getThingName(), e);
+        } finally {
+            // An invalid message is acknowledged too, not to hold a slot of the prefetch forever
+            if (delivery.getChannel() == channel) {
+                // Messages of a lost channel are delivered again by the broker, if their queue is still there
+                acknowledger.processed(delivery.getDeliveryTag());
+            }
+        }
+    }
+
+    /**
+     * Updates the status at once if none was updated within the last interval, and otherwise keeps the sample as the
+     * latest one, replacing the previous one, until the interval ends.
+     */
+    private void statusReceived(byte[] body) {
+        if (statusInterval <= 0) {
+            deviceMessage(body);
+            return;
+        }
+
+        if (latestStatus != null) {
+            deviceMetrics.statusSampleDropped(getThingName());
+        }
+        latestStatus = body;
+        if (statusTimerId == -1) {
+            updateLatestStatus();
+        }
+    }
+
+    private void updateLatestStatus() {
+        if (latestStatus == null) {
+            statusTimerId = -1;
+            return;
+        }
+
+        byte[] status = latestStatus;
+        latestStatus = null;
+        deviceMessage(status);
+        statusTimerId = vertx.setTimer(statusInterval, timer -> updateLatestStatus());
+    }
+}
@@ -1,5 +1,7 @@
 package info.ciclope.wotgate.thing;
 
+import com.google.inject.Inject;
+import info.ciclope.wotgate.metrics.MetricsRegistry;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
@@ -8,18 +10,23 @@ import io.vertx.core.Handler;
 public abstract class AbstractThing extends AbstractVerticle {
     private ThingConfiguration thingConfiguration;
     private HandlerRegister handlerRegister;
+    private int instanceIndex;
+    private boolean telemetryPublished;
+
+    @Inject
+    private MetricsRegistry metricsRegistry;
 
     @Override
     public void start(Future<Void> startFuture) {
         this.thingConfiguration = new ThingConfiguration(this.config());
+        this.telemetryPublished = thingConfiguration.isTelemetryPublished();
 
         startThing(startResult -> {
             if (startResult.succeeded()) {
-                handlerRegister = new HandlerRegister(vertx.eventBus(), thingConfiguration.getThingName());
+                handlerRegister = new HandlerRegister(vertx.eventBus(), thingConfiguration.getThingName(),
+                        metricsRegistry);
                 addHandlers(handlerRegister);
-                handlerRegister.register();
-
-                startFuture.complete();
+                handlerRegister.register(startFuture);
             } else {
                 startFuture.fail(startResult.cause());
             }
@@ -38,6 +45,35 @@ public abstract class AbstractThing extends AbstractVerticle {
         super.stop(stopFuture);
     }
 
+    protected String getThingName() {
+        return thingConfiguration.getThingName();
+    }
+
+    /**
+     * Publishes a sample of the device on {@code thingName + TelemetryReading.TELEMETRY}, only if the thing publishes
+     * its telemetry, so the samples are not built when no rule reads them.
+     */
+    protected void publishTelemetry(TelemetryReading<?> reading, long timestamp) {
+        if (telemetryPublished) {
+            vertx.eventBus().publish(getThingName() + TelemetryReading.TELEMETRY, reading.toSample(timestamp));
+        }
+    }
+
+    /**
+     * Sets the index of this instance among the instances of the thing deployed together.
+     */
+    public void setInstanceIndex(int instanceIndex) {
+        this.instanceIndex = instanceIndex;
+    }
+
+    /**
+     * Returns whether this is the first instance of the thing, the one running the duties that must not be repeated
+     * by every instance.
+     */
+    protected boolean isPrimaryInstance() {
+        return instanceIndex == 0;
+    }
+
     public abstract void addHandlers(HandlerRegister register);
 
     public abstract void startThing(Handler<AsyncResult<Void>> handler);
@@ -0,0 +1,146 @@
+package info.ciclope.wotgate.thing;
+
+import info.ciclope.wotgate.http.HttpStatus;
+import info.ciclope.wotgate.metrics.DeviceMetrics;
+import info.ciclope.wotgate.util.Backoff;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * Connection of a thing to its device, established in the background so the thing starts at once. Failed attempts
+ * and lost connections are retried with exponential backoff, and the thing is told about every change of state.
+ * Must be used from the context of its thing.
+ */
+public class DeviceConnection {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeviceConnection.class);
+    private static final long INITIAL_DELAY = 1000; // 1 second
+    private static final long MAX_DELAY = 60000; // 1 minute
+
+    public enum State {
+        DISCONNECTED, CONNECTING, CONNECTED;
+
+        @Override
+        public String toString() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final Vertx vertx;
+    private final String device;
+    private final Handler<Handler<AsyncResult<Void>>> connector;
+    private final Backoff backoff;
+    private final DeviceMetrics deviceMetrics;
+    private Handler<State> stateHandler;
+    private volatile State state;
+    private long timerId;
+    private boolean stopped;
+
+    /**
+     * @param connector opens the connection to the device and completes the given handler once it is ready
+     */
+    public DeviceConnection(Vertx vertx, String device, DeviceMetrics deviceMetrics,
+                            Handler<Handler<AsyncResult<Void>>> connector) {
+        this.vertx = vertx;
+        this.device = device;
+        this.connector = connector;
+        this.backoff = new Backoff(INITIAL_DELAY, MAX_DELAY);
+        this.state = State.DISCONNECTED;
+        this.timerId = -1;
+        this.deviceMetrics = deviceMetrics;
+        deviceMetrics.connectionState(device, this::isConnected);
+    }
+
+    public DeviceConnection stateHandler(Handler<State> stateHandler) {
+        this.stateHandler = stateHandler;
+        return this;
+    }
+
+    /**
+     * Starts connecting in the background.
+     */
+    public void start() {
+        stopped = false;
+        connect();
+    }
+
+    public void stop() {
+        stopped = true;
+        vertx.cancelTimer(timerId);
+        setState(State.DISCONNECTED);
+    }
+
+    /**
+     * Reports that the connection was lost, reconnecting after a backoff delay.
+     */
+    public void lost(Throwable cause) {
+        if (state != State.CONNECTED) {
+            return;
+        }
+
+        LOGGER.warn("Connection to " + device + " lost: " + cause);
+        setState(State.DISCONNECTED);
+        scheduleConnect();
+    }
+
+    public boolean isConnected() {
+        return state == State.CONNECTED;
+    }
+
+    /**
+     * Fails a command for the device with 503 if it is not connected, instead of waiting for the connection.
+     */
+    public boolean rejectIfDisconnected(Message<?> message) {
+        if (isConnected()) {
+            return false;
+        }
+
+        message.fail(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable");
+        return true;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    private void connect() {
+        if (stopped) {
+            return;
+        }
+
+        setState(State.CONNECTING);
+        connector.handle(connected -> {
+            if (stopped) {
+                return;
+            }
+
+            deviceMetrics.connectionAttempt(device, connected.succeeded());
+            if (connected.succeeded()) {
+                backoff.reset();
+                LOGGER.info("Connected to " + device);
+                setState(State.CONNECTED);
+            } else {
+                LOGGER.warn("Connection to " + device + " failed: " + connected.cause());
+                setState(State.DISCONNECTED);
+                scheduleConnect();
+            }
+        });
+    }
+
+    private void scheduleConnect() {
+        long delay = backoff.nextDelay();
+        timerId = vertx.setTimer(delay, timer -> connect());
+    }
+
+    private void setState(State state) {
+        if (this.state != state) {
+            this.state = state;
+            if (stateHandler != null) {
+                stateHandler.handle(state);
+            }
+        }
+    }
+}
@@ -1,33 +1,60 @@
 package info.ciclope.wotgate.thing;
 
+import info.ciclope.wotgate.http.HttpStatus;
+import info.ciclope.wotgate.metrics.Counter;
+import info.ciclope.wotgate.metrics.Histogram;
+import info.ciclope.wotgate.metrics.MetricsRegistry;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonObject;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class HandlerRegister {
     private String thingName;
-    private Map<String, Handler<Message<JsonObject>>> handlerMap;
+    private Map<String, Handler<Message<Object>>> handlerMap;
     private EventBus eventBus;
+    private MetricsRegistry metricsRegistry;
 
-    public HandlerRegister(EventBus eventBus, String thingName) {
+    public HandlerRegister(EventBus eventBus, String thingName, MetricsRegistry metricsRegistry) {
         this.handlerMap = new HashMap<>();
         this.thingName = thingName;
         this.eventBus = eventBus;
+        this.metricsRegistry = metricsRegistry;
     }
 
     public void addHandler(String action, Handler<Message<JsonObject>> handler) {
-        handlerMap.put(action, handler);
+        addHandler(action, JsonObject.class, handler);
+    }
+
+    /**
+     * Adds the handler of an action whose messages carry a body of a type, decoded by the codec registered for it in
+     * MessageCodecs. Messages with a body of another type are failed with 400 instead of reaching the handler.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void addHandler(String action, Class<T> bodyType, Handler<Message<T>> handler) {
+        handlerMap.put(action, message -> {
+            Object body = message.body();
+            if (body != null && !bodyType.isInstance(body)) {
+                message.fail(HttpStatus.BAD_REQUEST, "Body of " + action + " is not a " + bodyType.getSimpleName());
+                return;
+            }
+            handler.handle((Message<T>) (Message<?>) message);
+        });
     }
 
     public void removeHandler(String action) {
         handlerMap.remove(action);
     }
 
-    public Handler<Message<JsonObject>> getHandler(String action) {
+    public Handler<Message<Object>> getHandler(String action) {
         return handlerMap.get(action);
     }
 
@@ -35,7 +62,43 @@ public class HandlerRegister {
         return handlerMap.containsKey(action);
     }
 
-    public void register() {
-        handlerMap.forEach((action, handler) -> eventBus.consumer(thingName + action, handler));
+    /**
+     * Registers a consumer for every action, completing once all of them are registered. Several instances of a thing
+     * register their own consumers on the same addresses and the event bus delivers the messages among them.
+     */
+    public void register(Handler<AsyncResult<Void>> handler) {
+        List<Future> registrations = new ArrayList<>();
+        handlerMap.forEach((action, actionHandler) -> {
+            Future<Void> registration = Future.future();
+            eventBus.consumer(thingName + action, timed(thingName + action, actionHandler))
+                    .completionHandler(registration);
+            registrations.add(registration);
+        });
+
+        CompositeFuture.all(registrations).setHandler(allRegistered -> {
+            if (allRegistered.succeeded()) {
+                handler.handle(Future.succeededFuture());
+            } else {
+                handler.handle(Future.failedFuture(allRegistered.cause()));
+            }
+        });
+    }
+
+    private Handler<Message<Object>> timed(String address, Handler<Message<Object>> handler) {
+        Counter.Child received = metricsRegistry.counter("wotgate_eventbus_messages_received_total",
+                "Messages received by the things, by address.", "address").labels(address);
+        Histogram duration = metricsRegistry.histogram("wotgate_eventbus_handling_duration_seconds",
+                "Time from the reception of a message to its reply or failure, by address.", "address", "outcome");
+        Counter failures = metricsRegistry.counter("wotgate_eventbus_failures_total",
+                "Messages failed by the things, by address and failure code.", "address", "code");
+        Histogram.Child replyDuration = duration.labels(address, "reply");
+        Histogram.Child failureDuration = duration.labels(address, "failure");
+
+        return message -> {
+            received.increment();
+            TimedMessage<Object> timedMessage = new TimedMessage<>(message, replyDuration, failureDuration, failures);
+            handler.handle(timedMessage);
+            timedMessage.handled();
+        };
     }
 }
@@ -0,0 +1,66 @@
+package info.ciclope.wotgate.thing;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+/**
+ * Immutable query of the telemetry history of a thing between two times, in epoch milliseconds, downsampled into
+ * buckets of the given step.
+ */
+public class HistoryQuery {
+    public static final int MAX_POINTS = 1000;
+    private static final long DEFAULT_RANGE = 3600000; // 1 hour
+
+    private final long from;
+    private final long to;
+    private final long step;
+
+    @JsonCreator
+    public HistoryQuery(@JsonProperty("from") long from, @JsonProperty("to") long to,
+                        @JsonProperty("step") long step) {
+        this.from = from;
+        this.to = to;
+        this.step = step;
+    }
+
+    /**
+     * Creates the query of the parameters of a request: times as epoch milliseconds or ISO instants, the last hour by
+     * default, and a step in milliseconds, at least the one that gives {@link #MAX_POINTS} buckets.
+     *
+     * @throws IllegalArgumentException if a parameter is not valid
+     * @throws java.time.format.DateTimeParseException if a time is not valid
+     */
+    public static HistoryQuery of(String from, String to, String step, long now) {
+        long toTime = to != null ? parseTime(to) : now;
+        long fromTime = from != null ? parseTime(from) : toTime - DEFAULT_RANGE;
+        if (fromTime > toTime) {
+            throw new IllegalArgumentException("The history starts after its end");
+        }
+
+        long minStep = Math.max(1, (toTime - fromTime + MAX_POINTS - 1) / MAX_POINTS);
+        long stepTime = step != null ? Long.parseLong(step) : minStep;
+        if (stepTime <= 0) {
+            throw new IllegalArgumentException("The step of the history must be positive");
+        }
+
+        return new HistoryQuery(fromTime, toTime, Math.max(stepTime, minStep));
+    }
+
+    private static long parseTime(String time) {
+        return time.chars().allMatch(Character::isDigit) ? Long.parseLong(time) : Instant.parse(time).toEpochMilli();
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public long getStep() {
+        return step;
+    }
+}
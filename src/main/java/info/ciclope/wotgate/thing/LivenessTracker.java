@@ -0,0 +1,116 @@
+package info.ciclope.wotgate.thing;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tells whether the devices are alive, from the time each one was last heard of. Devices only record when they are
+ * seen, and a single periodic sweep over all of them turns inactive the ones not seen within their timeout. Every
+ * change is published on the address {@code deviceName + LIVENESS_CHANGED}.
+ */
+@Singleton
+public class LivenessTracker {
+    public static final String LIVENESS_CHANGED = ".livenessChanged";
+    private static final long SWEEP_INTERVAL = 1000; // 1 second
+
+    private final Vertx vertx;
+    private final EventBus eventBus;
+    private final List<Liveness> tracked;
+    private long timerId;
+
+    @Inject
+    public LivenessTracker(Vertx vertx, EventBus eventBus) {
+        this.vertx = vertx;
+        this.eventBus = eventBus;
+        this.tracked = new CopyOnWriteArrayList<>();
+        this.timerId = -1;
+    }
+
+    /**
+     * Starts sweeping, in the context of the caller, which must outlive the things.
+     */
+    public void start() {
+        timerId = vertx.setPeriodic(SWEEP_INTERVAL, timer -> sweep());
+    }
+
+    public void stop() {
+        if (timerId != -1) {
+            vertx.cancelTimer(timerId);
+        }
+    }
+
+    /**
+     * Tracks a device, inactive until seen. The inactive handler is called in the context of the caller.
+     */
+    public Liveness track(String device, long timeout, Handler<Void> inactiveHandler) {
+        Liveness liveness = new Liveness(device, timeout, vertx.getOrCreateContext(), inactiveHandler);
+        tracked.add(liveness);
+        return liveness;
+    }
+
+    public void untrack(Liveness liveness) {
+        tracked.remove(liveness);
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        tracked.forEach(liveness -> liveness.check(now));
+    }
+
+    public class Liveness {
+        private final String device;
+        private final long timeout;
+        private final Context context;
+        private final Handler<Void> inactiveHandler;
+        private volatile long lastSeen;
+        private volatile boolean active;
+
+        private Liveness(String device, long timeout, Context context, Handler<Void> inactiveHandler) {
+            this.device = device;
+            this.timeout = TimeUnit.MILLISECONDS.toNanos(timeout);
+            this.context = context;
+            this.inactiveHandler = inactiveHandler;
+        }
+
+        /**
+         * Records that the device has just been heard of.
+         */
+        public void seen() {
+            lastSeen = System.nanoTime();
+            if (!active) {
+                active = true;
+                publish();
+            }
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        private void check(long now) {
+            if (active && now - lastSeen > timeout) {
+                active = false;
+                publish();
+                // Unless seen again in the meantime
+                context.runOnContext(v -> {
+                    if (!active) {
+                        inactiveHandler.handle(null);
+                    }
+                });
+            }
+        }
+
+        private void publish() {
+            eventBus.publish(device + LIVENESS_CHANGED, new JsonObject().put("device", device).put("active", active));
+        }
+    }
+}
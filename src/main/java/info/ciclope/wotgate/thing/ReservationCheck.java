@@ -0,0 +1,73 @@
+package info.ciclope.wotgate.thing;
+
+import info.ciclope.wotgate.trace.Trace;
+import info.ciclope.wotgate.util.Util;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that a user holds the actual reservation, remembering the allowed users for a short time so a burst of
+ * commands of the same user asks the gatekeeper once. Must be used from the context of its thing.
+ */
+public class ReservationCheck {
+    /**
+     * Header of the commands sent by the gateway itself, such as the actions of the rules, naming their sender. These
+     * commands need no reservation.
+     */
+    public static final String SYSTEM_HEADER = "system";
+
+    private static final long ALLOWED_TIME = TimeUnit.SECONDS.toNanos(2);
+    private static final int MAX_USERS = 64;
+
+    private final EventBus eventBus;
+    private final Map<String, Long> allowedUntil;
+
+    public ReservationCheck(EventBus eventBus) {
+        this.eventBus = eventBus;
+        this.allowedUntil = new HashMap<>();
+    }
+
+    public static boolean isSystem(Message<?> message) {
+        return message.headers().contains(SYSTEM_HEADER);
+    }
+
+    /**
+     * Checks the user of a command, allowing the commands of the gateway itself.
+     */
+    public void check(Message<?> message, String username, Handler<AsyncResult<Boolean>> handler) {
+        if (isSystem(message)) {
+            handler.handle(Future.succeededFuture(true));
+            return;
+        }
+
+        check(username, Trace.of(message), handler);
+    }
+
+    public void check(String username, Trace trace, Handler<AsyncResult<Boolean>> handler) {
+        Long until = allowedUntil.get(username);
+        if (until != null && until - System.nanoTime() > 0) {
+            handler.handle(Future.succeededFuture(true));
+            return;
+        }
+
+        Util.checkActualReservation(username, eventBus, trace, result -> {
+            long now = System.nanoTime();
+            if (result.succeeded() && result.result()) {
+                if (allowedUntil.size() >= MAX_USERS) {
+                    allowedUntil.values().removeIf(userUntil -> userUntil - now <= 0);
+                }
+                allowedUntil.put(username, now + ALLOWED_TIME);
+            } else {
+                allowedUntil.remove(username);
+            }
+            handler.handle(result);
+        });
+    }
+}
@@ -0,0 +1,53 @@
+package info.ciclope.wotgate.thing;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * Immutable, already serialized status of a thing. Instances are shared by reference between the things and the
+ * HTTP layer, so the body buffer must never be modified.
+ */
+public class StatusSnapshot implements Shareable {
+    private final String thingName;
+    private final long version;
+    private final String etag;
+    private final Buffer body;
+
+    public StatusSnapshot(String thingName, long version, String etag, Buffer body) {
+        this.thingName = thingName;
+        this.version = version;
+        this.etag = etag;
+        this.body = body;
+    }
+
+    public String getThingName() {
+        return thingName;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public Buffer getBody() {
+        return body;
+    }
+
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String tag : ifNoneMatch.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,127 @@
+package info.ciclope.wotgate.thing;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.Json;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the last serialized status of every thing. Things serialize their status once per change and the HTTP layer
+ * serves the stored buffer directly, without an event bus round trip. Every update is announced with the new snapshot
+ * on the address {@code thingName + STATUS_CHANGED}.
+ * <p>
+ * All the snapshots are held in a single immutable observatory state, replaced atomically on every update, so the
+ * whole observatory can be read as one consistent and versioned document.
+ */
+@Singleton
+public class StatusSnapshotStore {
+    public static final String STATUS_CHANGED = ".statusChanged";
+    public static final String OBSERVATORY = "observatory";
+
+    private final EventBus eventBus;
+    private final AtomicReference<ObservatoryState> observatory;
+    private final String epoch;
+
+    @Inject
+    public StatusSnapshotStore(Vertx vertx) {
+        this.eventBus = vertx.eventBus();
+        // Distinguishes the ETags of different gateway runs, as versions start again from 1
+        this.epoch = Long.toHexString(System.currentTimeMillis());
+        this.observatory = new AtomicReference<>(new ObservatoryState(0, Collections.emptyMap()));
+    }
+
+    /**
+     * Serializes the status of a thing and stores it as its new snapshot. The version is assigned in the atomic
+     * replacement of the state, so the instances of a thing deployed several times may update it concurrently.
+     * A status serialized the same as the current snapshot keeps that snapshot, its version and ETag, and is not
+     * announced.
+     */
+    public StatusSnapshot update(String thingName, Object status) {
+        Buffer body = Json.encodeToBuffer(status);
+
+        StatusSnapshot snapshot = observatory.updateAndGet(state -> state.isCurrent(thingName, body) ? state
+                : state.with(state.next(thingName, body))).snapshots.get(thingName);
+        // Only the snapshot of this body is new
+        if (snapshot.getBody() == body) {
+            eventBus.publish(thingName + STATUS_CHANGED, snapshot);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Keeps the snapshot of a thing deployed in another node of the cluster, storing every snapshot it announces as
+     * is, with the version and ETag given by its node.
+     */
+    public void mirror(String thingName) {
+        eventBus.<StatusSnapshot>consumer(thingName + STATUS_CHANGED,
+                message -> observatory.updateAndGet(state -> state.with(message.body())));
+    }
+
+    public StatusSnapshot get(String thingName) {
+        return observatory.get().snapshots.get(thingName);
+    }
+
+    /**
+     * Returns the status of all the things as one document, serialized only once per version.
+     */
+    public StatusSnapshot getObservatory() {
+        return observatory.get().getSnapshot();
+    }
+
+    private String getEtag(String name, long version) {
+        return "\"" + name + "-" + epoch + "-" + Long.toHexString(version) + "\"";
+    }
+
+    private class ObservatoryState {
+        private final long version;
+        private final Map<String, StatusSnapshot> snapshots;
+        private volatile StatusSnapshot snapshot;
+
+        private ObservatoryState(long version, Map<String, StatusSnapshot> snapshots) {
+            this.version = version;
+            this.snapshots = snapshots;
+        }
+
+        private boolean isCurrent(String thingName, Buffer body) {
+            StatusSnapshot current = snapshots.get(thingName);
+            return current != null && current.getBody().equals(body);
+        }
+
+        private StatusSnapshot next(String thingName, Buffer body) {
+            StatusSnapshot previous = snapshots.get(thingName);
+            long thingVersion = previous == null ? 1 : previous.getVersion() + 1;
+
+            return new StatusSnapshot(thingName, thingVersion, getEtag(thingName, thingVersion), body);
+        }
+
+        private ObservatoryState with(StatusSnapshot thingSnapshot) {
+            Map<String, StatusSnapshot> updated = new TreeMap<>(snapshots);
+            updated.put(thingSnapshot.getThingName(), thingSnapshot);
+
+            return new ObservatoryState(version + 1, Collections.unmodifiableMap(updated));
+        }
+
+        private StatusSnapshot getSnapshot() {
+            // Several threads may serialize the same state at once, all of them get an equivalent document
+            if (snapshot == null) {
+                Buffer body = Buffer.buffer("{\"version\":").appendString(String.valueOf(version));
+                snapshots.forEach((name, thingSnapshot) -> body
+                        .appendString(",\"").appendString(name).appendString("\":")
+                        .appendBuffer(thingSnapshot.getBody()));
+                body.appendString("}");
+
+                snapshot = new StatusSnapshot(OBSERVATORY, version, getEtag(OBSERVATORY, version), body);
+            }
+
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package info.ciclope.wotgate.thing;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Decodes the telemetry of a device with the Jackson streaming parser straight from the bytes of each message, into a
+ * pair of reusable readings. Each message is decoded into the spare reading, which becomes the current one only if
+ * some value changed, so the thing builds and publishes a new status only on changes.
+ */
+public class TelemetryDecoder<R extends TelemetryReading<R>> {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private R current;
+    private R spare;
+    private boolean changed;
+    private boolean complete;
+
+    public TelemetryDecoder(R current, R spare) {
+        this.current = current;
+        this.spare = spare;
+        this.changed = true;
+    }
+
+    /**
+     * Decodes a message, returning whether it changed the current reading. Fields missing from the message keep their
+     * current values, once a message has held every required series of the reading.
+     *
+     * @throws JsonParseException if the message misses a required series and no complete reading precedes it
+     */
+    public boolean decode(byte[] message) throws IOException {
+        spare.copyFrom(current);
+        spare.startMessage();
+        try (JsonParser parser = JSON_FACTORY.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Telemetry is not a JSON object");
+            }
+            spare.readObject(parser);
+            if (!complete && !spare.isComplete()) {
+                throw new JsonParseException(parser, "Telemetry misses required values");
+            }
+        }
+        complete = true;
+
+        if (!changed && spare.sameAs(current)) {
+            return false;
+        }
+
+        R previous = current;
+        current = spare;
+        spare = previous;
+        changed = false;
+        return true;
+    }
+
+    public R getCurrent() {
+        return current;
+    }
+
+    /**
+     * Makes the next message change the current reading, once the status of the thing has been replaced by other means.
+     * The next message must be complete again.
+     */
+    public void reset() {
+        changed = true;
+        complete = false;
+    }
+}
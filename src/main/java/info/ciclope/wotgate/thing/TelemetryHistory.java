@@ -0,0 +1,144 @@
+package info.ciclope.wotgate.thing;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Recent telemetry of a thing, kept in a ring buffer of primitive columns, a timestamp and a value per series for each
+ * sample. The capacity comes from a memory budget, and once full every sample replaces the oldest one.
+ * <p>
+ * Must be used from the context of its thing.
+ */
+public class TelemetryHistory {
+    private final String[] series;
+    private final int capacity;
+    private final long[] timestamps;
+    private final double[][] values;
+    private final double[] sample;
+    private int first;
+    private int size;
+
+    /**
+     * @param memoryBudget bytes taken by the samples
+     */
+    public TelemetryHistory(long memoryBudget, String[] series) {
+        this.series = series;
+        this.capacity = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8,
+                memoryBudget / (Long.BYTES + (long) Double.BYTES * series.length)));
+        this.timestamps = new long[capacity];
+        this.values = new double[series.length][capacity];
+        this.sample = new double[series.length];
+    }
+
+    /**
+     * Records the values of a reading, at a time in epoch milliseconds not older than the previous one.
+     */
+    public void record(long timestamp, TelemetryReading<?> reading) {
+        reading.sample(sample);
+        int slot = (first + size) % capacity;
+        if (size == capacity) {
+            first = (first + 1) % capacity;
+        } else {
+            size++;
+        }
+
+        timestamps[slot] = timestamp;
+        for (int i = 0; i < series.length; i++) {
+            values[i][slot] = sample[i];
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the mean of every series in each step of the query with samples, as columns:
+     * <pre>
+     * {"from": 0, "to": 0, "step": 0, "timestamps": [...], "series": {"name": [...]}}
+     * </pre>
+     * The timestamp of a bucket is its start, and a series has a null value in the buckets without values of its own.
+     */
+    public JsonObject query(HistoryQuery query) {
+        JsonArray bucketTimestamps = new JsonArray();
+        JsonArray[] columns = new JsonArray[series.length];
+        for (int i = 0; i < series.length; i++) {
+            columns[i] = new JsonArray();
+        }
+
+        double[] sums = new double[series.length];
+        int[] counts = new int[series.length];
+        long bucket = Long.MIN_VALUE;
+        for (int index = firstIndexFrom(query.getFrom()); index < size; index++) {
+            int slot = (first + index) % capacity;
+            long timestamp = timestamps[slot];
+            if (timestamp > query.getTo()) {
+                break;
+            }
+
+            long sampleBucket = query.getFrom() + (timestamp - query.getFrom()) / query.getStep() * query.getStep();
+            if (sampleBucket != bucket) {
+                if (bucket != Long.MIN_VALUE) {
+                    addBucket(bucket, sums, counts, bucketTimestamps, columns);
+                }
+                bucket = sampleBucket;
+            }
+            for (int i = 0; i < series.length; i++) {
+                double value = values[i][slot];
+                if (!Double.isNaN(value)) {
+                    sums[i] += value;
+                    counts[i]++;
+                }
+            }
+        }
+        if (bucket != Long.MIN_VALUE) {
+            addBucket(bucket, sums, counts, bucketTimestamps, columns);
+        }
+
+        JsonObject seriesObject = new JsonObject();
+        for (int i = 0; i < series.length; i++) {
+            seriesObject.put(series[i], columns[i]);
+        }
+        return new JsonObject()
+                .put("from", query.getFrom())
+                .put("to", query.getTo())
+                .put("step", query.getStep())
+                .put("timestamps", bucketTimestamps)
+                .put("series", seriesObject);
+    }
+
+    private void addBucket(long bucket, double[] sums, int[] counts, JsonArray bucketTimestamps, JsonArray[] columns) {
+        bucketTimestamps.add(bucket);
+        for (int i = 0; i < series.length; i++) {
+            if (counts[i] > 0) {
+                columns[i].add(sums[i] / counts[i]);
+            } else {
+                columns[i].addNull();
+            }
+            sums[i] = 0;
+            counts[i] = 0;
+        }
+    }
+
+    /**
+     * Returns the index, from the oldest sample, of the first sample not older than a time.
+     */
+    private int firstIndexFrom(long from) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[(first + middle) % capacity] < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+}
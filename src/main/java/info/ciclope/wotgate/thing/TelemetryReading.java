@@ -0,0 +1,140 @@
+package info.ciclope.wotgate.thing;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+
+/**
+ * Values of a device read from its telemetry, decoded in place by a {@link TelemetryDecoder} into primitive fields.
+ * Readings are mutable and reused, so they are only read in the context of their thing.
+ */
+public abstract class TelemetryReading<R extends TelemetryReading<R>> {
+    /**
+     * Address suffix where every thing publishes the samples of its device, see {@link #toSample(long)}.
+     */
+    public static final String TELEMETRY = ".telemetry";
+
+    private int seriesRead;
+
+    /**
+     * Copies the values of another reading, sharing its strings.
+     */
+    protected abstract void copyFrom(R other);
+
+    /**
+     * Reads the value of a field, the current token of the parser, skipping the fields not known.
+     */
+    protected abstract void readField(String name, JsonParser parser) throws IOException;
+
+    protected abstract boolean sameAs(R other);
+
+    /**
+     * Mask of the series, by their index, that a message must hold when no complete reading precedes it. None by
+     * default.
+     */
+    protected int getRequiredSeries() {
+        return 0;
+    }
+
+    /**
+     * Names of the numeric values of the reading kept in its {@link TelemetryHistory}.
+     */
+    public abstract String[] getSeries();
+
+    /**
+     * Writes the numeric values of the reading, in the order of their series, NaN for the values unknown.
+     */
+    public abstract void sample(double[] values);
+
+    /**
+     * Returns the numeric values of the reading as a sample published on {@code thingName + TELEMETRY}, without the
+     * values unknown, as JSON has no NaN:
+     * <pre>
+     * {"timestamp": 0, "series": value...}
+     * </pre>
+     */
+    public JsonObject toSample(long timestamp) {
+        String[] series = getSeries();
+        double[] values = new double[series.length];
+        sample(values);
+
+        JsonObject sample = new JsonObject().put("timestamp", timestamp);
+        for (int i = 0; i < series.length; i++) {
+            if (!Double.isNaN(values[i])) {
+                sample.put(series[i], values[i]);
+            }
+        }
+
+        return sample;
+    }
+
+    /**
+     * Reads the fields of the object started at the current token of the parser.
+     */
+    protected void readObject(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            // Field names are canonicalized by the parser, no string is allocated for them
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            readField(name, parser);
+        }
+    }
+
+    /**
+     * Reads the numeric value of a series, returning the previous value, with the series not read, if the value is not
+     * a number.
+     */
+    protected double readNumber(JsonParser parser, int series, double previous) throws IOException {
+        if (!parser.currentToken().isNumeric()) {
+            parser.skipChildren();
+            return previous;
+        }
+
+        seriesRead |= 1 << series;
+        return parser.getDoubleValue();
+    }
+
+    /**
+     * Forgets the series read from the previous message.
+     */
+    void startMessage() {
+        seriesRead = 0;
+    }
+
+    /**
+     * Whether the last message held every required series.
+     */
+    boolean isComplete() {
+        return (seriesRead & getRequiredSeries()) == getRequiredSeries();
+    }
+
+    /**
+     * Reads a text value, returning the previous string if the text is the same, without allocating a new one.
+     */
+    protected static String readText(JsonParser parser, String previous) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+
+        char[] characters = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+        if (previous != null && previous.length() == length) {
+            int i = 0;
+            while (i < length && previous.charAt(i) == characters[offset + i]) {
+                i++;
+            }
+            if (i == length) {
+                return previous;
+            }
+        }
+
+        return new String(characters, offset, length);
+    }
+
+    protected static boolean sameText(String text, String other) {
+        return text == null ? other == null : text.equals(other);
+    }
+}
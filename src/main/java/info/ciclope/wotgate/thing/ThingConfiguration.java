@@ -6,6 +6,10 @@ import io.vertx.core.json.JsonObject;
 import java.security.InvalidParameterException;
 
 public class ThingConfiguration {
+    /**
+     * Whether the thing publishes the samples of its device, set for the things read by some rule.
+     */
+    public static final String PUBLISH_TELEMETRY = "publishTelemetry";
     private static final String THING_NAME = "name";
 
     private final JsonObject configuration;
@@ -36,4 +40,8 @@ public class ThingConfiguration {
     public String getThingName() {
         return configuration.getString(THING_NAME);
     }
+
+    public boolean isTelemetryPublished() {
+        return configuration.getBoolean(PUBLISH_TELEMETRY, false);
+    }
 }
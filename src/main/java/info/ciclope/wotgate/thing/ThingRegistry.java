@@ -0,0 +1,313 @@
+package info.ciclope.wotgate.thing;
+
+import com.google.inject.Injector;
+import info.ciclope.wotgate.metrics.Gauge;
+import info.ciclope.wotgate.metrics.MetricsRegistry;
+import info.ciclope.wotgate.thing.camera.CameraInfo;
+import info.ciclope.wotgate.thing.camera.CameraThing;
+import info.ciclope.wotgate.thing.dome.DomeInfo;
+import info.ciclope.wotgate.thing.dome.DomeThing;
+import info.ciclope.wotgate.thing.gatekeeper.GateKeeperInfo;
+import info.ciclope.wotgate.thing.gatekeeper.GateKeeperThing;
+import info.ciclope.wotgate.thing.mount.MountInfo;
+import info.ciclope.wotgate.thing.mount.MountThing;
+import info.ciclope.wotgate.thing.rules.RuleEngineThing;
+import info.ciclope.wotgate.thing.rules.RulesInfo;
+import info.ciclope.wotgate.thing.weatherstation.WeatherStationInfo;
+import info.ciclope.wotgate.thing.weatherstation.WeatherStationThing;
+import io.vertx.core.*;
+import io.vertx.core.eventbus.SendContext;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Deploys the things listed in the "things" configuration, merged with the default things of the gateway:
+ * <pre>
+ * {
+ *   "gatekeeper": {
+ *     "class": "info.ciclope.wotgate.thing.gatekeeper.GateKeeperThing",
+ *     "snapshot": "reservation",     // Status snapshot published by the thing, its name by default
+ *     "scalable": true,              // Whether several instances may be deployed
+ *     "instances": 4,
+ *     "worker": true, "workerPoolName": "gatekeeper", "workerPoolSize": 8,
+ *     "lazy": false,                 // Deployed on the first message sent to one of its addresses
+ *     "enabled": true,
+ *     "startTimeout": 10000,         // Milliseconds the gateway startup waits for the thing
+ *     "config": {}                   // Merged into the ThingConfiguration of the thing
+ *   }
+ * }
+ * </pre>
+ * Things are deployed in parallel, and a failed or slow thing does not hold up the rest of the gateway. Only the
+ * things read by some rule publish their telemetry.
+ */
+public class ThingRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThingRegistry.class);
+    private static final String CONFIGURATION_KEY = "things";
+    private static final long DEFAULT_START_TIMEOUT = 10000; // 10 seconds
+
+    private final Vertx vertx;
+    private final Injector injector;
+    private final List<ThingDeployment> things;
+    private final Map<String, ThingDeployment> lazyThings;
+    private final Gauge startupGauge;
+    private final Gauge deployedGauge;
+    private Handler<SendContext> lazyInterceptor;
+
+    public ThingRegistry(Vertx vertx, Injector injector, JsonObject configuration) {
+        this.vertx = vertx;
+        this.injector = injector;
+        this.things = new ArrayList<>();
+        this.lazyThings = new ConcurrentHashMap<>();
+
+        JsonObject defaults = getDefaultConfiguration();
+        JsonObject configured = configuration.getJsonObject(CONFIGURATION_KEY, new JsonObject());
+        Set<String> names = new LinkedHashSet<>(defaults.fieldNames());
+        names.addAll(configured.fieldNames());
+        Map<String, JsonObject> enabled = new LinkedHashMap<>();
+        names.forEach(name -> {
+            JsonObject thing = defaults.getJsonObject(name, new JsonObject()).copy()
+                    .mergeIn(configured.getJsonObject(name, new JsonObject()));
+            if (thing.getBoolean("enabled", true)) {
+                enabled.put(name, thing);
+            }
+        });
+        publishRuleTelemetry(enabled);
+        enabled.forEach((name, thing) -> things.add(new ThingDeployment(name, thing)));
+
+        MetricsRegistry metricsRegistry = injector.getInstance(MetricsRegistry.class);
+        this.startupGauge = metricsRegistry.gauge("wotgate_thing_startup_seconds",
+                "Time taken by the last deployment of each thing.", "thing");
+        this.deployedGauge = metricsRegistry.gauge("wotgate_thing_deployed",
+                "Whether each thing is deployed in this node.", "thing");
+    }
+
+    /**
+     * Deploys the local things and mirrors the status snapshots of the remote ones. Completes once every eager thing
+     * is deployed, has failed or has exceeded its start timeout, and never fails.
+     */
+    public void start(Predicate<String> isLocal, boolean mirrorRemote, Handler<AsyncResult<Void>> handler) {
+        injector.getInstance(LivenessTracker.class).start();
+        List<Future> startups = new ArrayList<>();
+        things.forEach(thing -> {
+            if (!isLocal.test(thing.name)) {
+                if (mirrorRemote) {
+                    injector.getInstance(StatusSnapshotStore.class).mirror(thing.snapshotName);
+                }
+            } else if (thing.lazy) {
+                lazyThings.put(thing.name, thing);
+            } else {
+                Future<Void> startup = Future.future();
+                startups.add(startup);
+                long timerId = vertx.setTimer(thing.startTimeout, timeout -> {
+                    LOGGER.warn("Thing " + thing.name + " is still starting after " + thing.startTimeout + " ms");
+                    startup.tryComplete();
+                });
+                thing.activate(deployed -> {
+                    vertx.cancelTimer(timerId);
+                    startup.tryComplete();
+                });
+            }
+        });
+
+        if (!lazyThings.isEmpty()) {
+            lazyInterceptor = this::activateLazyThing;
+            vertx.eventBus().addInterceptor(lazyInterceptor);
+        }
+
+        CompositeFuture.join(startups).setHandler(started -> handler.handle(Future.succeededFuture()));
+    }
+
+    public void stop() {
+        if (lazyInterceptor != null) {
+            vertx.eventBus().removeInterceptor(lazyInterceptor);
+        }
+        things.forEach(thing -> {
+            if (thing.deploymentId != null) {
+                vertx.undeploy(thing.deploymentId);
+            }
+        });
+        injector.getInstance(LivenessTracker.class).stop();
+    }
+
+    private void activateLazyThing(SendContext context) {
+        if (context.send()) {
+            String address = context.message().address();
+            int separator = address.indexOf('.');
+            ThingDeployment thing = separator > 0 ? lazyThings.get(address.substring(0, separator)) : null;
+            if (thing != null && thing.deploymentId == null) {
+                // Delivered once deployed, or failed with no handlers if the deployment fails
+                thing.activate(deployed -> context.next());
+                return;
+            }
+        }
+
+        context.next();
+    }
+
+    /**
+     * Makes the things read by the conditions of the rules publish their telemetry, unless their configuration says
+     * otherwise. A thing read by the rules of another node needs "publishTelemetry" in its own configuration.
+     */
+    private static void publishRuleTelemetry(Map<String, JsonObject> things) {
+        JsonObject rules = things.get(RulesInfo.NAME);
+        if (rules == null) {
+            return;
+        }
+
+        Set<String> read = new HashSet<>();
+        Object ruleList = rules.getJsonObject("config", new JsonObject()).getValue("rules");
+        if (ruleList instanceof JsonArray) {
+            ((JsonArray) ruleList).stream().filter(JsonObject.class::isInstance).forEach(rule -> {
+                Object conditions = ((JsonObject) rule).getValue("conditions");
+                if (conditions instanceof JsonArray) {
+                    ((JsonArray) conditions).stream().filter(JsonObject.class::isInstance)
+                            .map(condition -> ((JsonObject) condition).getValue("thing"))
+                            .filter(String.class::isInstance)
+                            .forEach(thing -> read.add((String) thing));
+                }
+            });
+        }
+
+        read.forEach(name -> {
+            JsonObject thing = things.get(name);
+            if (thing != null) {
+                JsonObject config = thing.getJsonObject("config", new JsonObject());
+                if (!config.containsKey(ThingConfiguration.PUBLISH_TELEMETRY)) {
+                    thing.put("config", config.copy().put(ThingConfiguration.PUBLISH_TELEMETRY, true));
+                }
+            }
+        });
+    }
+
+    private static JsonObject getDefaultConfiguration() {
+        return new JsonObject()
+                .put(GateKeeperInfo.NAME, new JsonObject()
+                        .put("class", GateKeeperThing.class.getName())
+                        .put("snapshot", GateKeeperInfo.ACTUAL_RESERVATION)
+                        .put("scalable", true))
+                .put(WeatherStationInfo.NAME, new JsonObject().put("class", WeatherStationThing.class.getName()))
+                .put(DomeInfo.NAME, new JsonObject().put("class", DomeThing.class.getName()))
+                .put(MountInfo.NAME, new JsonObject().put("class", MountThing.class.getName()))
+                .put(CameraInfo.NAME, new JsonObject().put("class", CameraThing.class.getName()))
+                .put(RulesInfo.NAME, new JsonObject().put("class", RuleEngineThing.class.getName()));
+    }
+
+    private class ThingDeployment {
+        private final String name;
+        private final String snapshotName;
+        private final boolean lazy;
+        private final long startTimeout;
+        private final JsonObject configuration;
+        private volatile String deploymentId;
+        private List<Handler<AsyncResult<Void>>> waiting;
+
+        private ThingDeployment(String name, JsonObject configuration) {
+            this.name = name;
+            this.snapshotName = configuration.getString("snapshot", name);
+            this.lazy = configuration.getBoolean("lazy", false);
+            this.startTimeout = configuration.getLong("startTimeout", DEFAULT_START_TIMEOUT);
+            this.configuration = configuration;
+        }
+
+        /**
+         * Deploys the thing unless it is being deployed already, handling the result once it is deployed.
+         */
+        private void activate(Handler<AsyncResult<Void>> handler) {
+            synchronized (this) {
+                if (deploymentId != null) {
+                    handler.handle(Future.succeededFuture());
+                    return;
+                } else if (waiting != null) {
+                    waiting.add(handler);
+                    return;
+                }
+                waiting = new ArrayList<>();
+                waiting.add(handler);
+            }
+
+            deploy(deployed -> {
+                List<Handler<AsyncResult<Void>>> handlers;
+                synchronized (this) {
+                    handlers = waiting;
+                    // A failed thing is deployed again on its next activation
+                    waiting = null;
+                }
+                handlers.forEach(waitingHandler -> waitingHandler.handle(deployed));
+            });
+        }
+
+        private void deploy(Handler<AsyncResult<Void>> handler) {
+            long start = System.nanoTime();
+            Supplier<Verticle> verticleSupplier;
+            try {
+                verticleSupplier = getVerticleSupplier();
+            } catch (ClassNotFoundException | ClassCastException e) {
+                LOGGER.error("Thing " + name + " has no valid class", e);
+                handler.handle(Future.failedFuture(e));
+                return;
+            }
+
+            vertx.deployVerticle(verticleSupplier, getDeploymentOptions(), deployment -> {
+                long milliseconds = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                startupGauge.labels(name).set(() -> milliseconds / 1000.0);
+                if (deployment.succeeded()) {
+                    deploymentId = deployment.result();
+                    deployedGauge.labels(name).set(() -> deploymentId != null ? 1 : 0);
+                    LOGGER.info("Thing " + name + " started in " + milliseconds + " ms");
+                    handler.handle(Future.succeededFuture());
+                } else {
+                    LOGGER.error("Thing " + name + " failed to start after " + milliseconds + " ms",
+                            deployment.cause());
+                    handler.handle(Future.failedFuture(deployment.cause()));
+                }
+            });
+        }
+
+        private Supplier<Verticle> getVerticleSupplier() throws ClassNotFoundException {
+            Class<? extends AbstractThing> thingClass = Class.forName(configuration.getString("class"))
+                    .asSubclass(AbstractThing.class);
+            AtomicInteger instanceIndex = new AtomicInteger();
+
+            return () -> {
+                AbstractThing thing = injector.getInstance(thingClass);
+                thing.setInstanceIndex(instanceIndex.getAndIncrement());
+                return thing;
+            };
+        }
+
+        /**
+         * Only the things without device state of their own may be deployed in several instances, every instance
+         * registering its own consumers.
+         */
+        private DeploymentOptions getDeploymentOptions() {
+            ThingConfiguration thingConfiguration = new ThingConfiguration(
+                    configuration.getJsonObject("config", new JsonObject()).copy().put("name", name));
+            DeploymentOptions options = new DeploymentOptions()
+                    .setConfig(thingConfiguration.asJsonObject())
+                    .setInstances(configuration.getInteger("instances", 1))
+                    .setWorker(configuration.getBoolean("worker", false));
+            if (configuration.containsKey("workerPoolName")) {
+                options.setWorkerPoolName(configuration.getString("workerPoolName"));
+            }
+            if (configuration.containsKey("workerPoolSize")) {
+                options.setWorkerPoolSize(configuration.getInteger("workerPoolSize"));
+            }
+
+            if (!configuration.getBoolean("scalable", false) && options.getInstances() > 1) {
+                LOGGER.warn("Thing " + name + " keeps the state of its device, deploying a single instance");
+                options.setInstances(1);
+            }
+
+            return options;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package info.ciclope.wotgate.thing;
+
+import info.ciclope.wotgate.metrics.Counter;
+import info.ciclope.wotgate.metrics.Histogram;
+import info.ciclope.wotgate.trace.Trace;
+import info.ciclope.wotgate.trace.Traced;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+
+/**
+ * Message that measures the time its handler takes to reply or fail it. When the message belongs to a traced request,
+ * the timings of the handler are returned in the headers of the reply.
+ */
+class TimedMessage<T> implements Message<T>, Traced {
+    private final Message<T> message;
+    private final long start;
+    private final Histogram.Child replyDuration;
+    private final Histogram.Child failureDuration;
+    private final Counter failures;
+    private Trace trace;
+    private boolean completed;
+
+    TimedMessage(Message<T> message, Histogram.Child replyDuration, Histogram.Child failureDuration, Counter failures) {
+        this.message = message;
+        this.start = System.nanoTime();
+        this.replyDuration = replyDuration;
+        this.failureDuration = failureDuration;
+        this.failures = failures;
+    }
+
+    @Override
+    public Trace getTrace() {
+        if (trace == null) {
+            trace = new Trace(message.headers().get(Trace.REQUEST_ID_HEADER));
+        }
+
+        return trace;
+    }
+
+    @Override
+    public String address() {
+        return message.address();
+    }
+
+    @Override
+    public MultiMap headers() {
+        return message.headers();
+    }
+
+    @Override
+    public T body() {
+        return message.body();
+    }
+
+    @Override
+    public String replyAddress() {
+        return message.replyAddress();
+    }
+
+    @Override
+    public boolean isSend() {
+        return message.isSend();
+    }
+
+    @Override
+    public void reply(Object reply) {
+        complete(replyDuration);
+        message.reply(reply, getReplyOptions(new DeliveryOptions()));
+    }
+
+    @Override
+    public <R> void reply(Object reply, Handler<AsyncResult<Message<R>>> replyHandler) {
+        complete(replyDuration);
+        message.reply(reply, getReplyOptions(new DeliveryOptions()), replyHandler);
+    }
+
+    @Override
+    public void reply(Object reply, DeliveryOptions options) {
+        complete(replyDuration);
+        message.reply(reply, getReplyOptions(options));
+    }
+
+    @Override
+    public <R> void reply(Object reply, DeliveryOptions options, Handler<AsyncResult<Message<R>>> replyHandler) {
+        complete(replyDuration);
+        message.reply(reply, getReplyOptions(options), replyHandler);
+    }
+
+    @Override
+    public void fail(int failureCode, String failureMessage) {
+        if (!completed) {
+            failures.labels(message.address(), String.valueOf(failureCode)).increment();
+        }
+        complete(failureDuration);
+        message.fail(failureCode, failureMessage);
+    }
+
+    /**
+     * Records the handling time of messages that don't expect a reply, once their handler returns.
+     */
+    void handled() {
+        if (message.replyAddress() == null) {
+            complete(replyDuration);
+        }
+    }
+
+    private DeliveryOptions getReplyOptions(DeliveryOptions options) {
+        Trace replyTrace = getTrace();
+        if (replyTrace.isTraced()) {
+            replyTrace.addTiming("thing", message.address(), start);
+            options.addHeader(Trace.TIMING_HEADER, replyTrace.getServerTiming());
+        }
+
+        return options;
+    }
+
+    private void complete(Histogram.Child duration) {
+        if (!completed) {
+            completed = true;
+            duration.observeSince(start);
+        }
+    }
+}
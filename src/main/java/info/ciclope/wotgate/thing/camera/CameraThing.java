@@ -2,35 +2,62 @@ package info.ciclope.wotgate.thing.camera;
 
 import com.google.inject.Inject;
 import info.ciclope.wotgate.http.HttpStatus;
+import info.ciclope.wotgate.metrics.DeviceMetrics;
 import info.ciclope.wotgate.thing.AbstractThing;
 import info.ciclope.wotgate.thing.HandlerRegister;
+import info.ciclope.wotgate.thing.LivenessTracker;
+import info.ciclope.wotgate.thing.StatusSnapshotStore;
 import info.ciclope.wotgate.thing.camera.model.Photo;
 import info.ciclope.wotgate.thing.camera.model.Status;
+import info.ciclope.wotgate.trace.Trace;
 import info.ciclope.wotgate.util.Util;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
 
 import javax.inject.Named;
 
 public class CameraThing extends AbstractThing {
+    private static final int UPDATE_INTERVAL = 60000; // 1 minute
+    private static final long INACTIVE_TIME = 300000; // 5 minutes
+    private static final String[] STATUS_FIELDS = {"brightness", "gamma", "exposure"};
 
     @Inject
     private EventBus eventBus;
 
+    @Inject
+    private StatusSnapshotStore statusSnapshotStore;
+
+    @Inject
+    private DeviceMetrics deviceMetrics;
+
     @Inject
     @Named("camera")
     private WebClient webClient;
 
+    @Inject
+    private LivenessTracker livenessTracker;
+
+    private long timerId;
+    private LivenessTracker.Liveness liveness;
+    private JsonObject lastReading;
     private Status status;
 
     @Override
     public void startThing(Handler<AsyncResult<Void>> handler) {
-        status = new Status();
+        setStatus(new Status());
+        liveness = livenessTracker.track(CameraInfo.NAME, config().getLong("inactiveTime", INACTIVE_TIME),
+                inactive -> cameraInactive());
+        // The camera status is only read by this poll, and served from its snapshot
+        updateStatus();
+        timerId = vertx.setPeriodic(UPDATE_INTERVAL, event -> updateStatus());
         handler.handle(Future.succeededFuture());
     }
 
@@ -44,28 +71,86 @@ public class CameraThing extends AbstractThing {
 
     @Override
     public void stopThing(Handler<AsyncResult<Void>> handler) {
+        vertx.cancelTimer(timerId);
+        livenessTracker.untrack(liveness);
         handler.handle(Future.succeededFuture());
     }
 
     private void getStatus(Message<JsonObject> message) {
+        message.reply(statusSnapshotStore.get(CameraInfo.NAME));
+    }
+
+    /**
+     * Reads the status of the camera, keeping the last one read, flagged as stale, while the camera cannot be read and
+     * until it has not been read within "inactiveTime".
+     */
+    private void updateStatus() {
         // TODO: Poner url correcta
+        long start = System.nanoTime();
         webClient.get("/api/camera").send(event -> {
-            if (event.succeeded() && event.result().statusCode() == HttpStatus.OK) {
-                // Obtain response object
-                status = new Status(event.result().bodyAsJsonObject());
-            } else {
-                status = new Status();
+            JsonObject reading = event.succeeded() ? decode(event.result()) : null;
+            deviceMetrics.webClientRequest(CameraInfo.NAME, start, reading != null);
+            if (reading == null) {
+                setStale(true);
+                return;
             }
 
-            message.reply(JsonObject.mapFrom(status));
+            liveness.seen();
+            if (!reading.equals(lastReading)) {
+                lastReading = reading;
+                setStatus(new Status(reading));
+            } else {
+                setStale(false);
+            }
         });
     }
 
+    /**
+     * Returns the status of the camera in a response, or null if the response has no valid status.
+     */
+    private JsonObject decode(HttpResponse<Buffer> response) {
+        if (response.statusCode() != HttpStatus.OK) {
+            return null;
+        }
+
+        try {
+            JsonObject reading = response.bodyAsJsonObject();
+            if (reading == null) {
+                return null;
+            }
+            for (String field : STATUS_FIELDS) {
+                if (!(reading.getValue(field) instanceof Number)) {
+                    return null;
+                }
+            }
+            return reading;
+        } catch (DecodeException e) {
+            return null;
+        }
+    }
+
+    private void cameraInactive() {
+        lastReading = null;
+        setStatus(new Status());
+    }
+
+    private void setStale(boolean stale) {
+        if (status.isActive() && status.isStale() != stale) {
+            status.setStale(stale);
+            setStatus(status);
+        }
+    }
+
+    private void setStatus(Status status) {
+        this.status = status;
+        statusSnapshotStore.update(CameraInfo.NAME, status);
+    }
+
     private void config(Message<JsonObject> message) {
         try {
             Status status = message.body().getJsonObject("body").mapTo(Status.class);
 
-            Util.checkActualReservation(message.body().getString("username"), eventBus, result -> {
+            Util.checkActualReservation(message.body().getString("username"), eventBus, Trace.of(message), result -> {
                 if (result.succeeded() && result.result()) {
                     // TODO: Llamada API cambiar configuracion
                     message.reply(null);
@@ -79,7 +164,7 @@ public class CameraThing extends AbstractThing {
     }
 
     private void takePhoto(Message<JsonObject> message) {
-        Util.checkActualReservation(message.body().getString("username"), eventBus, result -> {
+        Util.checkActualReservation(message.body().getString("username"), eventBus, Trace.of(message), result -> {
             if (result.succeeded() && result.result()) {
                 // TODO: LLamada a API tomar imagen
                 /// Mock
@@ -93,7 +178,7 @@ public class CameraThing extends AbstractThing {
     }
 
     private void getPhoto(Message<JsonObject> message) {
-        Util.checkActualReservation(message.body().getString("username"), eventBus, result -> {
+        Util.checkActualReservation(message.body().getString("username"), eventBus, Trace.of(message), result -> {
             if (result.succeeded() && result.result()) {
                 int photoId = message.body().getInteger("photoId");
                 // TODO: LLamada a API obtener imagen 'photoId'
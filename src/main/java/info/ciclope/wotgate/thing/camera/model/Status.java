@@ -15,6 +15,9 @@ public class Status {
 
     private boolean active;
 
+    // The last status read is kept, flagged as stale, while the camera cannot be read
+    private boolean stale;
+
     @JsonSerialize(using = InstantSerializer.class)
     private Instant timestamp;
 
@@ -63,6 +66,14 @@ public class Status {
         this.active = active;
     }
 
+    public boolean isStale() {
+        return stale;
+    }
+
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
     public Instant getTimestamp() {
         return timestamp;
     }
@@ -4,9 +4,7 @@ public class DomeInfo {
     public static final String NAME = "dome";
 
     public static final String STATUS = ".status";
+    public static final String HISTORY = ".history";
     public static final String OPEN = ".open";
     public static final String CLOSE = ".close";
-
-    // RabbitMQ
-    public static final String RABBIT_STATUS = ".rabbit.status";
 }
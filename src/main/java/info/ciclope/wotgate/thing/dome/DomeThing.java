@@ -1,126 +1,130 @@
 package info.ciclope.wotgate.thing.dome;
 
 import com.google.inject.Inject;
+import info.ciclope.wotgate.amqp.Actuation;
+import info.ciclope.wotgate.amqp.AmqpTopology;
 import info.ciclope.wotgate.http.HttpStatus;
-import info.ciclope.wotgate.thing.AbstractThing;
+import info.ciclope.wotgate.thing.AbstractAmqpThing;
+import info.ciclope.wotgate.thing.DeviceConnection;
 import info.ciclope.wotgate.thing.HandlerRegister;
+import info.ciclope.wotgate.thing.HistoryQuery;
+import info.ciclope.wotgate.thing.ReservationCheck;
+import info.ciclope.wotgate.thing.StatusSnapshotStore;
+import info.ciclope.wotgate.thing.TelemetryDecoder;
+import info.ciclope.wotgate.thing.TelemetryHistory;
+import info.ciclope.wotgate.thing.dome.model.DomeReading;
 import info.ciclope.wotgate.thing.dome.model.Status;
-import info.ciclope.wotgate.util.Util;
-import io.vertx.core.AsyncResult;
-import io.vertx.core.Future;
-import io.vertx.core.Handler;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonObject;
-import io.vertx.rabbitmq.RabbitMQClient;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 
-public class DomeThing extends AbstractThing {
+import java.io.IOException;
+
+public class DomeThing extends AbstractAmqpThing {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DomeThing.class);
     private static final String QUEUE_DOME = "queueCupula";
     private static final String EXCHANGE_DOME = "cupula";
     private static final String ROUTING_KEY_ACTION = "action";
     private static final String ROUTING_KEY_INFO = "info";
+    private static final AmqpTopology TOPOLOGY = new AmqpTopology(EXCHANGE_DOME, "direct", QUEUE_DOME,
+            ROUTING_KEY_INFO);
 
-    private static final int INACTIVE_TIME = 120000; // 2 minutes
+    private static final long HISTORY_BUDGET = 2097152; // 2 MB
 
     @Inject
-    private RabbitMQClient rabbitMQClient;
+    private EventBus eventBus;
 
     @Inject
-    private EventBus eventBus;
+    private StatusSnapshotStore statusSnapshotStore;
 
-    private long timerId;
+    private final TelemetryDecoder<DomeReading> decoder = new TelemetryDecoder<>(new DomeReading(),
+            new DomeReading());
+    private TelemetryHistory history;
+    private ReservationCheck reservationCheck;
     private Status status;
 
     @Override
-    public void startThing(Handler<AsyncResult<Void>> handler) {
-        status = new Status();
-        connectRabbit(handler);
+    protected AmqpTopology getTopology() {
+        return TOPOLOGY;
+    }
+
+    @Override
+    protected void startDevice() {
+        setStatus(new Status());
+        history = new TelemetryHistory(config().getLong("historyBudget", HISTORY_BUDGET),
+                decoder.getCurrent().getSeries());
+        reservationCheck = new ReservationCheck(eventBus);
     }
 
     @Override
     public void addHandlers(HandlerRegister register) {
         register.addHandler(DomeInfo.STATUS, this::getStatus);
+        register.addHandler(DomeInfo.HISTORY, HistoryQuery.class, this::getHistory);
         register.addHandler(DomeInfo.OPEN, this::openShutter);
         register.addHandler(DomeInfo.CLOSE, this::closeShutter);
-        register.addHandler(DomeInfo.RABBIT_STATUS, this::updateStatus);
     }
 
-    @Override
-    public void stopThing(Handler<AsyncResult<Void>> handler) {
-        handler.handle(Future.succeededFuture());
+    private void getStatus(Message<JsonObject> message) {
+        message.reply(statusSnapshotStore.get(DomeInfo.NAME));
     }
 
-    private void getStatus(Message<JsonObject> message) {
-        message.reply(JsonObject.mapFrom(status));
+    private void getHistory(Message<HistoryQuery> message) {
+        message.reply(history.query(message.body()));
     }
 
     private void openShutter(Message<JsonObject> message) {
-        Util.checkActualReservation(message.body().getString("username"), eventBus, result -> {
-            if (result.succeeded() && result.result()) {
-                JsonObject data = new JsonObject().put("action", "open");
-                rabbitMQClient.basicPublish(EXCHANGE_DOME, ROUTING_KEY_ACTION, new JsonObject().put("body", data.toString()),
-                        publishHandler -> {
-                            if (publishHandler.succeeded()) {
-                                message.reply(null);
-                            } else {
-                                message.fail(HttpStatus.INTERNAL_ERROR, "Internal Error");
-                            }
-                        });
-            } else {
-                message.fail(HttpStatus.UNAUTHORIZED, "Unauthorized");
-            }
-        });
+        sendAction(new Actuation("open", status -> "open".equalsIgnoreCase(status.getString("shutter"))), message);
     }
 
     private void closeShutter(Message<JsonObject> message) {
-        Util.checkActualReservation(message.body().getString("username"), eventBus, result -> {
+        sendAction(new Actuation("close", status -> "closed".equalsIgnoreCase(status.getString("shutter"))), message);
+    }
+
+    private void sendAction(Actuation actuation, Message<JsonObject> message) {
+        if (rejectIfDisconnected(message)) {
+            return;
+        }
+
+        reservationCheck.check(message, message.body().getString("username"), result -> {
             if (result.succeeded() && result.result()) {
-                JsonObject data = new JsonObject().put("action", "close");
-                rabbitMQClient.basicPublish(EXCHANGE_DOME, ROUTING_KEY_ACTION, new JsonObject().put("body", data.toString()),
-                        publishHandler -> {
-                            if (publishHandler.succeeded()) {
-                                message.reply(null);
-                            } else {
-                                message.fail(HttpStatus.INTERNAL_ERROR, "Internal Error");
-                            }
-                        });
+                publishCommand(ROUTING_KEY_ACTION, new JsonObject().put("action", actuation.getCommand()), actuation,
+                        message, message.body().getBoolean("wait", false));
             } else {
                 message.fail(HttpStatus.UNAUTHORIZED, "Unauthorized");
             }
         });
     }
 
-    private void connectRabbit(Handler<AsyncResult<Void>> handler) {
-        Future<Void> startFuture = Future.future();
-
-        rabbitMQClient.start(startFuture);
-        Future<Void> completedFuture = startFuture.compose(s -> {
-            Future<Void> exchangeFuture = Future.future();
-            rabbitMQClient.exchangeDeclare(EXCHANGE_DOME, "direct", false, false, exchangeFuture);
-            return exchangeFuture;
-        }).compose(s -> {
-            Future<JsonObject> queueFuture = Future.future();
-            rabbitMQClient.queueDeclare(QUEUE_DOME, false, true, false, queueFuture);
-            return queueFuture;
-        }).compose(s -> {
-            Future<Void> bindFuture = Future.future();
-            rabbitMQClient.queueBind(QUEUE_DOME, EXCHANGE_DOME, ROUTING_KEY_INFO, bindFuture);
-            return bindFuture;
-        }).compose(s -> {
-            Future<Void> consumeFuture = Future.future();
-            rabbitMQClient.basicConsume(QUEUE_DOME, DomeInfo.NAME + DomeInfo.RABBIT_STATUS, consumeFuture);
-            return consumeFuture;
-        });
+    @Override
+    protected void deviceMessage(byte[] message) {
+        try {
+            if (decoder.decode(message)) {
+                setStatus(new Status(decoder.getCurrent()));
+            }
+            long now = System.currentTimeMillis();
+            history.record(now, decoder.getCurrent());
+            publishTelemetry(decoder.getCurrent(), now);
+        } catch (IOException e) {
+            LOGGER.warn("Invalid status message of the dome", e);
+        }
+    }
 
-        completedFuture.setHandler(handler);
+    @Override
+    protected void deviceInactive() {
+        decoder.reset();
+        setStatus(new Status());
     }
 
-    private void updateStatus(Message<JsonObject> message) {
-        status = new Status(new JsonObject(message.body().getString("body")));
-        // Message received, stop last timer
-        vertx.cancelTimer(timerId);
+    @Override
+    protected void connectionChanged(DeviceConnection.State state) {
+        setStatus(status);
+    }
 
-        // New timer to set the status inactive if no more messages received
-        timerId = vertx.setTimer(INACTIVE_TIME, event -> status = new Status());
+    private void setStatus(Status status) {
+        status.setConnection(getConnectionState().toString());
+        this.status = status;
+        statusSnapshotStore.update(DomeInfo.NAME, status);
     }
 }
@@ -0,0 +1,85 @@
+package info.ciclope.wotgate.thing.dome.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import info.ciclope.wotgate.thing.TelemetryReading;
+
+import java.io.IOException;
+
+/**
+ * Reading of the dome, whose azimuth and supply voltage are required.
+ */
+public class DomeReading extends TelemetryReading<DomeReading> {
+    private static final String[] SERIES = {"azimuth", "supplyVoltage"};
+    private static final int ALL_SERIES = (1 << SERIES.length) - 1;
+
+    private double azimuth;
+    private double supplyVoltage;
+    private String currentAction;
+    private String shutter;
+
+    public double getAzimuth() {
+        return azimuth;
+    }
+
+    public double getSupplyVoltage() {
+        return supplyVoltage;
+    }
+
+    public String getCurrentAction() {
+        return currentAction;
+    }
+
+    public String getShutter() {
+        return shutter;
+    }
+
+    @Override
+    protected void copyFrom(DomeReading other) {
+        azimuth = other.azimuth;
+        supplyVoltage = other.supplyVoltage;
+        currentAction = other.currentAction;
+        shutter = other.shutter;
+    }
+
+    @Override
+    protected void readField(String name, JsonParser parser) throws IOException {
+        switch (name) {
+            case "azimuth":
+                azimuth = readNumber(parser, 0, azimuth);
+                break;
+            case "supply_voltage":
+                supplyVoltage = readNumber(parser, 1, supplyVoltage);
+                break;
+            case "current_action":
+                currentAction = readText(parser, currentAction);
+                break;
+            case "shutter":
+                shutter = readText(parser, shutter);
+                break;
+            default:
+                parser.skipChildren();
+        }
+    }
+
+    @Override
+    protected boolean sameAs(DomeReading other) {
+        return azimuth == other.azimuth && supplyVoltage == other.supplyVoltage
+                && sameText(currentAction, other.currentAction) && sameText(shutter, other.shutter);
+    }
+
+    @Override
+    protected int getRequiredSeries() {
+        return ALL_SERIES;
+    }
+
+    @Override
+    public String[] getSeries() {
+        return SERIES;
+    }
+
+    @Override
+    public void sample(double[] values) {
+        values[0] = azimuth;
+        values[1] = supplyVoltage;
+    }
+}
@@ -2,7 +2,6 @@ package info.ciclope.wotgate.thing.dome.model;
 
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import info.ciclope.wotgate.util.InstantSerializer;
-import io.vertx.core.json.JsonObject;
 
 import java.time.Instant;
 
@@ -20,6 +19,8 @@ public class Status {
     @JsonSerialize(using = InstantSerializer.class)
     private Instant timestamp;
 
+    private String connection;
+
     public Status() {
         this.active = false;
         this.currentAction = "";
@@ -27,11 +28,11 @@ public class Status {
         this.timestamp = Instant.now();
     }
 
-    public Status(JsonObject object) {
-        this.azimuth = object.getDouble("azimuth");
-        this.supplyVoltage = object.getDouble("supply_voltage");
-        this.currentAction = object.getString("current_action");
-        this.shutter = object.getString("shutter");
+    public Status(DomeReading reading) {
+        this.azimuth = reading.getAzimuth();
+        this.supplyVoltage = reading.getSupplyVoltage();
+        this.currentAction = reading.getCurrentAction();
+        this.shutter = reading.getShutter();
         this.active = true;
         this.timestamp = Instant.now();
     }
@@ -83,4 +84,12 @@ public class Status {
     public void setTimestamp(Instant timestamp) {
         this.timestamp = timestamp;
     }
+
+    public String getConnection() {
+        return connection;
+    }
+
+    public void setConnection(String connection) {
+        this.connection = connection;
+    }
 }
@@ -19,4 +19,7 @@ public class GateKeeperInfo {
     public static final String CANCEL_RESERVATION = ".cancelReservation";
     public static final String COMPLETE_RESERVATION = ".completeReservation";
     public static final String GET_ACTUAL_RESERVATION = ".getActualReservation";
+
+    // Name of the actual reservation in the observatory status
+    public static final String ACTUAL_RESERVATION = "reservation";
 }
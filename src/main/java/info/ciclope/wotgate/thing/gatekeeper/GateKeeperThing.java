@@ -4,6 +4,7 @@ import com.google.inject.Inject;
 import info.ciclope.wotgate.thing.AbstractThing;
 import info.ciclope.wotgate.thing.HandlerRegister;
 import info.ciclope.wotgate.thing.gatekeeper.database.GatekeeperDatabase;
+import info.ciclope.wotgate.thing.gatekeeper.model.ReservationQuery;
 import info.ciclope.wotgate.thing.gatekeeper.service.AuthorityService;
 import info.ciclope.wotgate.thing.gatekeeper.service.ReservationService;
 import info.ciclope.wotgate.thing.gatekeeper.service.UserService;
@@ -13,6 +14,7 @@ import io.vertx.core.Handler;
 
 public class GateKeeperThing extends AbstractThing {
     private static final int UPDATE_INTERVAL = 900000; // 15 minutes
+    private static final int ACTUAL_RESERVATION_INTERVAL = 60000; // 1 minute
 
     @Inject
     private UserService userService;
@@ -27,11 +29,21 @@ public class GateKeeperThing extends AbstractThing {
     private GatekeeperDatabase gatekeeperDatabase;
 
     private long timerId;
+    private long actualReservationTimerId;
 
     @Override
     public void startThing(Handler<AsyncResult<Void>> handler) {
-        timerId = vertx.setPeriodic(UPDATE_INTERVAL, event -> reservationService.checkCompletedReservations());
-        gatekeeperDatabase.initDatabaseStorage(handler);
+        // The database initialization is idempotent, every instance waits for it before handling messages
+        gatekeeperDatabase.initDatabaseStorage(result -> {
+            if (result.succeeded() && isPrimaryInstance()) {
+                timerId = vertx.setPeriodic(UPDATE_INTERVAL, event -> reservationService.checkCompletedReservations());
+                // Reservations start and end with time, keep the actual one up to date
+                reservationService.updateActualReservation();
+                actualReservationTimerId = vertx.setPeriodic(ACTUAL_RESERVATION_INTERVAL,
+                        event -> reservationService.updateActualReservation());
+            }
+            handler.handle(result);
+        });
     }
 
     @Override
@@ -46,7 +58,8 @@ public class GateKeeperThing extends AbstractThing {
         register.addHandler(GateKeeperInfo.ACTIVATE_USER, userService::activateUser);
 
         // Reservation
-        register.addHandler(GateKeeperInfo.GET_RESERVATIONS_RANGE, reservationService::getAllReservationsInRange);
+        register.addHandler(GateKeeperInfo.GET_RESERVATIONS_RANGE, ReservationQuery.class,
+                reservationService::getAllReservationsInRange);
         register.addHandler(GateKeeperInfo.GET_RESERVATIONS_USER, reservationService::getAllReservationsOfUser);
         register.addHandler(GateKeeperInfo.CREATE_RESERVATION, reservationService::createReservation);
         register.addHandler(GateKeeperInfo.CANCEL_RESERVATION, reservationService::cancelReservation);
@@ -56,7 +69,10 @@ public class GateKeeperThing extends AbstractThing {
 
     @Override
     public void stopThing(Handler<AsyncResult<Void>> handler) {
-        vertx.cancelTimer(timerId);
+        if (isPrimaryInstance()) {
+            vertx.cancelTimer(timerId);
+            vertx.cancelTimer(actualReservationTimerId);
+        }
         handler.handle(Future.succeededFuture());
     }
 
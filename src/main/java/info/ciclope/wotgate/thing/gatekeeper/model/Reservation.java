@@ -24,6 +24,7 @@ public class Reservation {
     private LocalDateTime endDate;
 
     @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
     private LocalDateTime dateCreated;
 
     public Reservation() {
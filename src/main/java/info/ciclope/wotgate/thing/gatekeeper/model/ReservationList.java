@@ -0,0 +1,26 @@
+package info.ciclope.wotgate.thing.gatekeeper.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unmodifiable list of reservations, serialized as a JSON array. The reservations are shared by reference with the
+ * receiver, so they must not be modified once the list is sent.
+ */
+public class ReservationList {
+    private final List<Reservation> reservations;
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public ReservationList(List<Reservation> reservations) {
+        this.reservations = Collections.unmodifiableList(new ArrayList<>(reservations));
+    }
+
+    @JsonValue
+    public List<Reservation> getReservations() {
+        return reservations;
+    }
+}
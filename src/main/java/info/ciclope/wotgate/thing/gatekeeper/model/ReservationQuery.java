@@ -0,0 +1,50 @@
+package info.ciclope.wotgate.thing.gatekeeper.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import info.ciclope.wotgate.util.LocalDateTimeDeserializer;
+import info.ciclope.wotgate.util.LocalDateTimeSerializer;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Immutable query of the reservations between two dates.
+ */
+public class ReservationQuery {
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    private final LocalDateTime start;
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    private final LocalDateTime end;
+
+    @JsonCreator
+    public ReservationQuery(@JsonProperty("start") LocalDateTime start, @JsonProperty("end") LocalDateTime end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Creates the query of the whole days between two ISO dates.
+     *
+     * @throws java.time.format.DateTimeParseException if a date is not valid
+     */
+    public static ReservationQuery ofDays(String start, String end) {
+        return new ReservationQuery(LocalDate.parse(start, DateTimeFormatter.ISO_DATE).atStartOfDay(),
+                LocalDate.parse(end, DateTimeFormatter.ISO_DATE).atTime(23, 59));
+    }
+
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    public LocalDateTime getEnd() {
+        return end;
+    }
+}
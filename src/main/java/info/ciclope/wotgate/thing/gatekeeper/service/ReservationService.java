@@ -3,20 +3,21 @@ package info.ciclope.wotgate.thing.gatekeeper.service;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import info.ciclope.wotgate.http.HttpStatus;
+import info.ciclope.wotgate.thing.StatusSnapshotStore;
+import info.ciclope.wotgate.thing.gatekeeper.GateKeeperInfo;
 import info.ciclope.wotgate.thing.gatekeeper.database.ReservationDao;
 import info.ciclope.wotgate.thing.gatekeeper.model.Reservation;
+import info.ciclope.wotgate.thing.gatekeeper.model.ReservationList;
+import info.ciclope.wotgate.thing.gatekeeper.model.ReservationQuery;
 import info.ciclope.wotgate.thing.gatekeeper.model.ReservationStatus;
 import info.ciclope.wotgate.thing.gatekeeper.model.User;
 import info.ciclope.wotgate.util.Interval;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.eventbus.Message;
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.Comparator;
 import java.util.stream.Collectors;
 
@@ -25,33 +26,26 @@ public class ReservationService {
 
     private UserService userService;
     private ReservationDao reservationDao;
+    private StatusSnapshotStore statusSnapshotStore;
 
     @Inject
-    public ReservationService(UserService userService, ReservationDao reservationDao) {
+    public ReservationService(UserService userService, ReservationDao reservationDao,
+                              StatusSnapshotStore statusSnapshotStore) {
         this.userService = userService;
         this.reservationDao = reservationDao;
+        this.statusSnapshotStore = statusSnapshotStore;
     }
 
-    public void getAllReservationsInRange(Message<JsonObject> message) {
-        LocalDateTime start, end;
+    public void getAllReservationsInRange(Message<ReservationQuery> message) {
+        ReservationQuery query = message.body();
 
-        try {
-            start = LocalDate.parse(message.body().getString("start"), DateTimeFormatter.ISO_DATE).atStartOfDay();
-            end = LocalDate.parse(message.body().getString("end"), DateTimeFormatter.ISO_DATE).atTime(23, 59);
-
-            reservationDao.getAllReservationsInRange(start, end, result -> {
-                if (result.succeeded()) {
-                    JsonArray jsonArray = result.result().stream()
-                            .map(JsonObject::mapFrom)
-                            .collect(Collectors.collectingAndThen(Collectors.toList(), JsonArray::new));
-                    message.reply(jsonArray);
-                } else {
-                    message.fail(HttpStatus.INTERNAL_ERROR, "Error");
-                }
-            });
-        } catch (DateTimeParseException e) {
-            message.fail(HttpStatus.BAD_REQUEST, "Bad Request");
-        }
+        reservationDao.getAllReservationsInRange(query.getStart(), query.getEnd(), result -> {
+            if (result.succeeded()) {
+                message.reply(new ReservationList(result.result()));
+            } else {
+                message.fail(HttpStatus.INTERNAL_ERROR, "Error");
+            }
+        });
     }
 
     public void getAllReservationsOfUser(Message<JsonObject> message) {
@@ -59,12 +53,10 @@ public class ReservationService {
 
         reservationDao.getAllReservationsByUser(username, result -> {
             if (result.succeeded()) {
-                JsonArray jsonArray = result.result().stream()
+                message.reply(new ReservationList(result.result().stream()
                         .sorted(Comparator.comparingInt(Reservation::getStatus)
                                 .thenComparing(Reservation::getStartDate))
-                        .map(JsonObject::mapFrom)
-                        .collect(Collectors.collectingAndThen(Collectors.toList(), JsonArray::new));
-                message.reply(jsonArray);
+                        .collect(Collectors.toList())));
             } else {
                 message.fail(HttpStatus.INTERNAL_ERROR, "Error");
             }
@@ -123,6 +115,7 @@ public class ReservationService {
                         if (resultReservation.succeeded()) {
                             int reservationId = resultReservation.result();
                             message.reply(reservationId);
+                            updateActualReservation();
                         } else {
                             message.fail(HttpStatus.BAD_REQUEST, "Bad Request");
                         }
@@ -144,6 +137,7 @@ public class ReservationService {
             reservationDao.cancelReservation(reservationId, result -> {
                 if (result.succeeded()) {
                     message.reply(null);
+                    updateActualReservation();
                 } else {
                     message.fail(HttpStatus.RESOURCE_NOT_FOUND, "Not Found");
                 }
@@ -157,6 +151,7 @@ public class ReservationService {
                                 reservationDao.cancelReservation(reservationId, result -> {
                                     if (result.succeeded()) {
                                         message.reply(null);
+                                        updateActualReservation();
                                     } else {
                                         message.fail(HttpStatus.RESOURCE_NOT_FOUND, "Not Found");
                                     }
@@ -177,6 +172,7 @@ public class ReservationService {
         reservationDao.completeReservation(reservationId, result -> {
             if (result.succeeded() && result.result().getUpdated() != 0) {
                 message.reply(null);
+                updateActualReservation();
             } else {
                 message.fail(HttpStatus.RESOURCE_NOT_FOUND, "Not Found");
             }
@@ -197,4 +193,15 @@ public class ReservationService {
                         .filter(r -> r.getEndDate().isBefore(LocalDateTime.now()))
                         .forEach(r -> reservationDao.completeReservation(r.getId(), AsyncResult::succeeded)));
     }
+
+    /**
+     * Stores the actual reservation, or null if there is none, in the observatory status
+     */
+    public void updateActualReservation() {
+        reservationDao.getActualReservation(result -> {
+            if (result.succeeded()) {
+                statusSnapshotStore.update(GateKeeperInfo.ACTUAL_RESERVATION, result.result());
+            }
+        });
+    }
 }
@@ -0,0 +1,205 @@
+package info.ciclope.wotgate.thing.mount;
+
+import info.ciclope.wotgate.http.HttpStatus;
+import info.ciclope.wotgate.metrics.DeviceMetrics;
+import info.ciclope.wotgate.thing.mount.model.Direction;
+import info.ciclope.wotgate.thing.mount.model.Movement;
+import info.ciclope.wotgate.trace.Trace;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Commands waiting to be sent to the mount, dispatched one at a time and no faster than the mount can absorb them.
+ * Meanwhile, consecutive steps in the same direction are merged into one command of several steps, and a new movement
+ * replaces the pending one. Every merged command is replied once the command that includes it is sent.
+ * <p>
+ * Must be used from the context of the mount.
+ */
+class MountCommandQueue {
+    static final String STEP = "step";
+    static final String MOVE = "moveRaDec";
+
+    private static final int MAX_QUEUED = 32;
+    private static final int MAX_STEPS = 20;
+
+    private final Vertx vertx;
+    private final long interval;
+    private final DeviceMetrics deviceMetrics;
+    private final BiConsumer<JsonObject, Handler<AsyncResult<Void>>> dispatcher;
+    private final LinkedList<Command> queue;
+    private boolean dispatching;
+    private long lastDispatch;
+    private long timerId;
+
+    /**
+     * @param interval   minimum milliseconds between two commands sent to the mount
+     * @param dispatcher sends a command to the mount, completing once it is delivered
+     */
+    MountCommandQueue(Vertx vertx, long interval, DeviceMetrics deviceMetrics,
+                      BiConsumer<JsonObject, Handler<AsyncResult<Void>>> dispatcher) {
+        this.vertx = vertx;
+        this.interval = TimeUnit.MILLISECONDS.toNanos(interval);
+        this.deviceMetrics = deviceMetrics;
+        this.dispatcher = dispatcher;
+        this.queue = new LinkedList<>();
+        this.lastDispatch = System.nanoTime() - this.interval;
+        this.timerId = -1;
+
+        deviceMetrics.commandQueueDepth(MountInfo.NAME, queue::size);
+    }
+
+    void step(Direction direction, Message<?> message) {
+        deviceMetrics.commandReceived(MountInfo.NAME, STEP);
+        Command last = queue.peekLast();
+        if (last != null && last.type.equals(STEP) && last.direction.equals(direction.getDirection())
+                && last.steps < MAX_STEPS) {
+            last.steps++;
+            last.add(message);
+            return;
+        }
+
+        Command command = new Command(STEP, message);
+        command.direction = direction.getDirection();
+        command.steps = 1;
+        enqueue(command, message);
+    }
+
+    void move(Movement movement, Message<?> message) {
+        deviceMetrics.commandReceived(MountInfo.NAME, MOVE);
+        Command command = new Command(MOVE, message);
+        command.movement = movement;
+
+        // Only the latest target matters, the pending movement is replaced
+        Iterator<Command> pending = queue.iterator();
+        while (pending.hasNext()) {
+            Command queued = pending.next();
+            if (queued.type.equals(MOVE)) {
+                command.messages.addAll(0, queued.messages);
+                command.starts.addAll(0, queued.starts);
+                pending.remove();
+                break;
+            }
+        }
+
+        enqueue(command, message);
+    }
+
+    void stop() {
+        vertx.cancelTimer(timerId);
+        queue.forEach(command -> command.fail(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable"));
+        queue.clear();
+    }
+
+    private void enqueue(Command command, Message<?> message) {
+        if (queue.size() >= MAX_QUEUED) {
+            message.fail(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests");
+            return;
+        }
+
+        queue.add(command);
+        dispatchNext();
+    }
+
+    private void dispatchNext() {
+        if (dispatching || timerId != -1 || queue.isEmpty()) {
+            return;
+        }
+
+        long wait = lastDispatch + interval - System.nanoTime();
+        if (wait > 0) {
+            timerId = vertx.setTimer(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)), timer -> {
+                timerId = -1;
+                dispatchNext();
+            });
+            return;
+        }
+
+        Command command = queue.poll();
+        dispatching = true;
+        lastDispatch = System.nanoTime();
+        deviceMetrics.commandDispatched(MountInfo.NAME, command.type);
+        dispatcher.accept(command.toJson(), dispatched -> {
+            dispatching = false;
+            if (dispatched.succeeded()) {
+                command.reply();
+            } else {
+                command.fail(HttpStatus.INTERNAL_ERROR, "Internal Error");
+            }
+            dispatchNext();
+        });
+    }
+
+    private static class Command {
+        private final String type;
+        private final List<Message<?>> messages;
+        private final List<Long> starts;
+        private String direction;
+        private int steps;
+        private Movement movement;
+
+        private Command(String type, Message<?> message) {
+            this.type = type;
+            this.messages = new ArrayList<>();
+            this.starts = new ArrayList<>();
+            add(message);
+        }
+
+        private void add(Message<?> message) {
+            messages.add(message);
+            starts.add(System.nanoTime());
+        }
+
+        private JsonObject toJson() {
+            JsonObject data = new JsonObject().put("comando", type);
+            JsonArray params = new JsonArray();
+            if (type.equals(MOVE)) {
+                // Parameters of command (Type movement, coordinates)
+                params.add(1); // 1: RaDec
+                params.add(new JsonArray().add(movement.getRightAscension()).add(movement.getDeclination()));
+            } else {
+                // Parameters of command (direction, number of steps if more than one)
+                switch (direction) {
+                    case "Up":
+                        params.add("n");
+                        break;
+                    case "Down":
+                        params.add("s");
+                        break;
+                    case "Right":
+                        params.add("e");
+                        break;
+                    case "Left":
+                        params.add("w");
+                        break;
+                }
+                if (steps > 1) {
+                    params.add(steps);
+                }
+            }
+
+            return data.put("parametros", params);
+        }
+
+        private void reply() {
+            for (int i = 0; i < messages.size(); i++) {
+                Trace.of(messages.get(i)).addTiming("mount", type, starts.get(i));
+                messages.get(i).reply(null);
+            }
+        }
+
+        private void fail(int failureCode, String failureMessage) {
+            messages.forEach(message -> message.fail(failureCode, failureMessage));
+        }
+    }
+}
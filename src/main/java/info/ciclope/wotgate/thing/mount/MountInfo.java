@@ -4,9 +4,7 @@ public class MountInfo {
     public static final String NAME = "mount";
 
     public static final String STATUS = ".status";
+    public static final String HISTORY = ".history";
     public static final String MOVE = ".move";
     public static final String STEP = ".step";
-
-    // RabbitMQ
-    public static final String RABBIT_STATUS = ".rabbit.status";
 }
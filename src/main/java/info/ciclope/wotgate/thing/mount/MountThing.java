@@ -1,175 +1,200 @@
 package info.ciclope.wotgate.thing.mount;
 
 import com.google.inject.Inject;
+import info.ciclope.wotgate.amqp.Actuation;
+import info.ciclope.wotgate.amqp.AmqpTopology;
 import info.ciclope.wotgate.http.HttpStatus;
-import info.ciclope.wotgate.thing.AbstractThing;
+import info.ciclope.wotgate.metrics.DeviceMetrics;
+import info.ciclope.wotgate.thing.AbstractAmqpThing;
+import info.ciclope.wotgate.thing.DeviceConnection;
 import info.ciclope.wotgate.thing.HandlerRegister;
+import info.ciclope.wotgate.thing.HistoryQuery;
+import info.ciclope.wotgate.thing.ReservationCheck;
+import info.ciclope.wotgate.thing.StatusSnapshotStore;
+import info.ciclope.wotgate.thing.TelemetryDecoder;
+import info.ciclope.wotgate.thing.TelemetryHistory;
+import info.ciclope.wotgate.thing.mount.model.MountReading;
 import info.ciclope.wotgate.thing.mount.model.Direction;
+import info.ciclope.wotgate.thing.mount.model.MountCommand;
 import info.ciclope.wotgate.thing.mount.model.Movement;
 import info.ciclope.wotgate.thing.mount.model.Status;
-import info.ciclope.wotgate.util.Util;
 import io.vertx.core.AsyncResult;
-import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.rabbitmq.RabbitMQClient;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 
-public class MountThing extends AbstractThing {
+import java.io.IOException;
+
+public class MountThing extends AbstractAmqpThing {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MountThing.class);
     private static final String QUEUE_MOUNT = "queueMontura";
     private static final String EXCHANGE_MOUNT = "montura";
     private static final String ROUTING_KEY_COMAND = "comand";
     private static final String ROUTING_KEY_INFO = "info";
+    private static final AmqpTopology TOPOLOGY = new AmqpTopology(EXCHANGE_MOUNT, "direct", QUEUE_MOUNT,
+            ROUTING_KEY_INFO);
 
-    private static final int INACTIVE_TIME = 120000; // 2 minutes
+    private static final long COMMAND_INTERVAL = 200; // 200 milliseconds
+    private static final long HISTORY_BUDGET = 2097152; // 2 MB
+    private static final double POINTING_TOLERANCE = 1.0 / 3600; // 1 second of hour or degree
+    private static final double RIGHT_ASCENSION_PERIOD = 24; // 24 hours
 
     @Inject
-    private RabbitMQClient rabbitMQClient;
+    private EventBus eventBus;
 
     @Inject
-    private EventBus eventBus;
+    private StatusSnapshotStore statusSnapshotStore;
+
+    @Inject
+    private DeviceMetrics deviceMetrics;
 
-    private long timerId;
+    private ReservationCheck reservationCheck;
+    private MountCommandQueue commandQueue;
+    private final TelemetryDecoder<MountReading> decoder = new TelemetryDecoder<>(new MountReading(),
+            new MountReading());
+    private TelemetryHistory history;
     private Status status;
 
     @Override
-    public void startThing(Handler<AsyncResult<Void>> handler) {
-        status = new Status();
-        connectRabbit(handler);
+    protected AmqpTopology getTopology() {
+        return TOPOLOGY;
     }
 
     @Override
-    public void addHandlers(HandlerRegister register) {
-        register.addHandler(MountInfo.STATUS, this::getStatus);
-        register.addHandler(MountInfo.MOVE, this::move);
-        register.addHandler(MountInfo.STEP, this::step);
-        register.addHandler(MountInfo.RABBIT_STATUS, this::updateStatus);
+    protected void startDevice() {
+        setStatus(new Status());
+        history = new TelemetryHistory(config().getLong("historyBudget", HISTORY_BUDGET),
+                decoder.getCurrent().getSeries());
+        reservationCheck = new ReservationCheck(eventBus);
+        // Key repeats of the UI are merged while the mount absorbs the previous command
+        commandQueue = new MountCommandQueue(vertx, config().getLong("commandInterval", COMMAND_INTERVAL),
+                deviceMetrics,
+                (command, handler) -> publishCommand(ROUTING_KEY_COMAND, command, getActuation(command), handler));
+    }
+
+    /**
+     * A movement is done once the mount reports its coordinates, within one second of right ascension and one
+     * arcsecond of declination, and the steps with the next status of the mount.
+     */
+    private Actuation getActuation(JsonObject command) {
+        String type = command.getString("comando");
+        if (type.equals(MountCommandQueue.MOVE)) {
+            JsonArray coordinates = command.getJsonArray("parametros").getJsonArray(1);
+            String rightAscension = coordinates.getString(0);
+            String declination = coordinates.getString(1);
+            return new Actuation(type, status ->
+                    isReached(rightAscension, status.getString("rightAscension"), RIGHT_ASCENSION_PERIOD)
+                            && isReached(declination, status.getString("declination"), 0));
+        }
+
+        return new Actuation(type, status -> true);
+    }
+
+    /**
+     * Whether a reported coordinate is the requested one, within one second of its unit and, when the coordinate
+     * wraps around, modulo its period. Coordinates that are not sexagesimal must be equal.
+     */
+    private static boolean isReached(String requested, String reported, double period) {
+        double target = MountReading.toDecimal(requested);
+        double position = MountReading.toDecimal(reported);
+        if (Double.isNaN(target) || Double.isNaN(position)) {
+            return requested.equals(reported);
+        }
+
+        double difference = period > 0 ? Math.IEEEremainder(position - target, period) : position - target;
+        return Math.abs(difference) <= POINTING_TOLERANCE;
     }
 
     @Override
     public void stopThing(Handler<AsyncResult<Void>> handler) {
-        handler.handle(Future.succeededFuture());
+        commandQueue.stop();
+        super.stopThing(handler);
+    }
+
+    @Override
+    public void addHandlers(HandlerRegister register) {
+        register.addHandler(MountInfo.STATUS, this::getStatus);
+        register.addHandler(MountInfo.HISTORY, HistoryQuery.class, this::getHistory);
+        register.addHandler(MountInfo.MOVE, MountCommand.class, this::move);
+        register.addHandler(MountInfo.STEP, MountCommand.class, this::step);
     }
 
     private void getStatus(Message<JsonObject> message) {
-        message.reply(JsonObject.mapFrom(status));
+        message.reply(statusSnapshotStore.get(MountInfo.NAME));
     }
 
-    private void move(Message<JsonObject> message) {
-        try {
-            Movement movement = message.body().getJsonObject("body").mapTo(Movement.class);
-            if (!movement.validate()) {
-                message.fail(HttpStatus.BAD_REQUEST, "Bad Request");
-                return;
-            }
+    private void getHistory(Message<HistoryQuery> message) {
+        message.reply(history.query(message.body()));
+    }
 
-            Util.checkActualReservation(message.body().getString("username"), eventBus, result -> {
-                if (result.succeeded() && result.result()) {
-                    JsonObject data = new JsonObject();
-                    JsonArray params = new JsonArray();
-                    data.put("comando", "moveRaDec");
-
-                    // Parameters of command (Type movement, coordinates)
-                    params.add(1); // 1: RaDec
-                    params.add(new JsonArray().add(movement.getRightAscension()).add(movement.getDeclination()));
-                    data.put("parametros", params);
-
-                    sendCommand(data, message);
-                } else {
-                    message.fail(HttpStatus.UNAUTHORIZED, "Unauthorized");
-                }
-            });
-        } catch (IllegalArgumentException e) {
+    private void move(Message<MountCommand> message) {
+        Movement movement = message.body().getMovement();
+        if (movement == null || !movement.validate()) {
             message.fail(HttpStatus.BAD_REQUEST, "Bad Request");
+            return;
+        } else if (rejectIfDisconnected(message)) {
+            return;
         }
-    }
 
-    private void step(Message<JsonObject> message) {
-        try {
-            Direction direction = message.body().getJsonObject("body").mapTo(Direction.class);
-            if (!direction.validate()) {
-                message.fail(HttpStatus.BAD_REQUEST, "Bad Request");
-                return;
+        reservationCheck.check(message, message.body().getUsername(), result -> {
+            if (result.succeeded() && result.result()) {
+                commandQueue.move(movement, message);
+            } else {
+                message.fail(HttpStatus.UNAUTHORIZED, "Unauthorized");
             }
+        });
+    }
 
-            Util.checkActualReservation(message.body().getString("username"), eventBus, result -> {
-                if (result.succeeded() && result.result()) {
-                    JsonObject data = new JsonObject();
-                    JsonArray params = new JsonArray();
-                    data.put("comando", "step");
-
-                    // Parameters of command (direction)
-                    switch (direction.getDirection()) {
-                        case "Up":
-                            params.add("n");
-                            break;
-                        case "Down":
-                            params.add("s");
-                            break;
-                        case "Right":
-                            params.add("e");
-                            break;
-                        case "Left":
-                            params.add("w");
-                            break;
-                    }
-                    data.put("parametros", params);
-
-                    sendCommand(data, message);
-                } else {
-                    message.fail(HttpStatus.UNAUTHORIZED, "Unauthorized");
-                }
-            });
-        } catch (IllegalArgumentException e) {
+    private void step(Message<MountCommand> message) {
+        Direction direction = message.body().getDirection();
+        if (direction == null || !direction.validate()) {
             message.fail(HttpStatus.BAD_REQUEST, "Bad Request");
+            return;
+        } else if (rejectIfDisconnected(message)) {
+            return;
         }
-    }
 
-    @SuppressWarnings("Duplicates")
-    private void connectRabbit(Handler<AsyncResult<Void>> handler) {
-        Future<Void> startFuture = Future.future();
-
-        rabbitMQClient.start(startFuture);
-        Future<Void> completedFuture = startFuture.compose(s -> {
-            Future<Void> exchangeFuture = Future.future();
-            rabbitMQClient.exchangeDeclare(EXCHANGE_MOUNT, "direct", false, false, exchangeFuture);
-            return exchangeFuture;
-        }).compose(s -> {
-            Future<JsonObject> queueFuture = Future.future();
-            rabbitMQClient.queueDeclare(QUEUE_MOUNT, false, true, false, queueFuture);
-            return queueFuture;
-        }).compose(s -> {
-            Future<Void> bindFuture = Future.future();
-            rabbitMQClient.queueBind(QUEUE_MOUNT, EXCHANGE_MOUNT, ROUTING_KEY_INFO, bindFuture);
-            return bindFuture;
-        }).compose(s -> {
-            Future<Void> consumeFuture = Future.future();
-            rabbitMQClient.basicConsume(QUEUE_MOUNT, MountInfo.NAME + MountInfo.RABBIT_STATUS, consumeFuture);
-            return consumeFuture;
+        reservationCheck.check(message, message.body().getUsername(), result -> {
+            if (result.succeeded() && result.result()) {
+                commandQueue.step(direction, message);
+            } else {
+                message.fail(HttpStatus.UNAUTHORIZED, "Unauthorized");
+            }
         });
+    }
 
-        completedFuture.setHandler(handler);
+    @Override
+    protected void deviceMessage(byte[] message) {
+        try {
+            if (decoder.decode(message)) {
+                setStatus(new Status(decoder.getCurrent()));
+            }
+            long now = System.currentTimeMillis();
+            history.record(now, decoder.getCurrent());
+            publishTelemetry(decoder.getCurrent(), now);
+        } catch (IOException e) {
+            LOGGER.warn("Invalid status message of the mount", e);
+        }
     }
 
-    private void sendCommand(JsonObject data, Message message) {
-        rabbitMQClient.basicPublish(EXCHANGE_MOUNT, ROUTING_KEY_COMAND, new JsonObject().put("body", data.toString()),
-                publishHandler -> {
-                    if (publishHandler.succeeded()) {
-                        message.reply(null);
-                    } else {
-                        message.fail(HttpStatus.INTERNAL_ERROR, "Internal Error");
-                    }
-                });
+    @Override
+    protected void deviceInactive() {
+        decoder.reset();
+        setStatus(new Status());
     }
 
-    private void updateStatus(Message<JsonObject> message) {
-        status = new Status(new JsonObject(message.body().getString("body")));
-        // Message received, stop last timer
-        vertx.cancelTimer(timerId);
+    @Override
+    protected void connectionChanged(DeviceConnection.State state) {
+        setStatus(status);
+    }
 
-        // New timer to set the status inactive if no more messages received
-        timerId = vertx.setTimer(INACTIVE_TIME, event -> status = new Status());
+    private void setStatus(Status status) {
+        status.setConnection(getConnectionState().toString());
+        this.status = status;
+        statusSnapshotStore.update(MountInfo.NAME, status);
     }
 }
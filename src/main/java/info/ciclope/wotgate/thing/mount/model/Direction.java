@@ -1,14 +1,18 @@
 package info.ciclope.wotgate.thing.mount.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 public class Direction {
-    private String direction;
+    private final String direction;
 
-    public String getDirection() {
-        return direction;
+    @JsonCreator
+    public Direction(@JsonProperty("direction") String direction) {
+        this.direction = direction;
     }
 
-    public void setDirection(String direction) {
-        this.direction = direction;
+    public String getDirection() {
+        return direction;
     }
 
     @SuppressWarnings("RedundantIfStatement")
@@ -0,0 +1,44 @@
+package info.ciclope.wotgate.thing.mount.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Immutable command for the mount on behalf of a user, either a movement or a step in a direction.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MountCommand {
+    private final String username;
+    private final Movement movement;
+    private final Direction direction;
+
+    @JsonCreator
+    public MountCommand(@JsonProperty("username") String username,
+                        @JsonProperty("movement") Movement movement,
+                        @JsonProperty("direction") Direction direction) {
+        this.username = username;
+        this.movement = movement;
+        this.direction = direction;
+    }
+
+    public static MountCommand move(String username, Movement movement) {
+        return new MountCommand(username, movement, null);
+    }
+
+    public static MountCommand step(String username, Direction direction) {
+        return new MountCommand(username, null, direction);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Movement getMovement() {
+        return movement;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+}
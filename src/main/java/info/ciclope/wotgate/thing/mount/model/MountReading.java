@@ -0,0 +1,113 @@
+package info.ciclope.wotgate.thing.mount.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import info.ciclope.wotgate.thing.TelemetryReading;
+
+import java.io.IOException;
+
+/**
+ * Reading of the mount. Its coordinates are kept in the history as decimal hours of right ascension and degrees of
+ * declination.
+ */
+public class MountReading extends TelemetryReading<MountReading> {
+    private static final String[] SERIES = {"rightAscension", "declination"};
+
+    private String rightAscension;
+    private String declination;
+    private String currentAction;
+
+    public String getRightAscension() {
+        return rightAscension;
+    }
+
+    public String getDeclination() {
+        return declination;
+    }
+
+    public String getCurrentAction() {
+        return currentAction;
+    }
+
+    @Override
+    protected void copyFrom(MountReading other) {
+        rightAscension = other.rightAscension;
+        declination = other.declination;
+        currentAction = other.currentAction;
+    }
+
+    @Override
+    protected void readField(String name, JsonParser parser) throws IOException {
+        switch (name) {
+            case "rightAscension":
+                rightAscension = readText(parser, rightAscension);
+                break;
+            case "declination":
+                declination = readText(parser, declination);
+                break;
+            case "current_action":
+                currentAction = readText(parser, currentAction);
+                break;
+            default:
+                parser.skipChildren();
+        }
+    }
+
+    @Override
+    protected boolean sameAs(MountReading other) {
+        return sameText(rightAscension, other.rightAscension) && sameText(declination, other.declination)
+                && sameText(currentAction, other.currentAction);
+    }
+
+    @Override
+    public String[] getSeries() {
+        return SERIES;
+    }
+
+    @Override
+    public void sample(double[] values) {
+        values[0] = toDecimal(rightAscension);
+        values[1] = toDecimal(declination);
+    }
+
+    /**
+     * Converts sexagesimal coordinates, like "-12:30:36" or "+12:30:36.5", to decimal, NaN if not valid.
+     */
+    public static double toDecimal(String sexagesimal) {
+        if (sexagesimal == null || sexagesimal.isEmpty()) {
+            return Double.NaN;
+        }
+
+        boolean negative = sexagesimal.charAt(0) == '-';
+        int index = negative || sexagesimal.charAt(0) == '+' ? 1 : 0;
+        double value = 0;
+        double unit = 1;
+        double part = 0;
+        // Weight of the next decimal digit of the part, 0 before its decimal point
+        double decimal = 0;
+        boolean digits = false;
+        for (; index <= sexagesimal.length(); index++) {
+            char character = index < sexagesimal.length() ? sexagesimal.charAt(index) : ':';
+            if (character >= '0' && character <= '9') {
+                if (decimal > 0) {
+                    part += (character - '0') * decimal;
+                    decimal /= 10;
+                } else {
+                    part = part * 10 + character - '0';
+                }
+                digits = true;
+            } else if (character == '.' && digits && decimal == 0) {
+                decimal = 0.1;
+            } else if (character == ':' && digits) {
+                value += part / unit;
+                unit *= 60;
+                part = 0;
+                decimal = 0;
+                digits = false;
+            } else {
+                return Double.NaN;
+            }
+        }
+
+        return negative ? -value : value;
+    }
+}
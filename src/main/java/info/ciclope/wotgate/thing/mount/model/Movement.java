@@ -1,30 +1,32 @@
 package info.ciclope.wotgate.thing.mount.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.util.regex.Pattern;
 
 public class Movement {
     private static final String regexPattern = "-?\\d{2}:\\d{2}(:\\d{2})?";
 
-    private String rightAscension;
+    private final String rightAscension;
 
-    private String declination;
+    private final String declination;
 
-    public String getRightAscension() {
-        return rightAscension;
+    @JsonCreator
+    public Movement(@JsonProperty("rightAscension") String rightAscension,
+                    @JsonProperty("declination") String declination) {
+        this.rightAscension = rightAscension;
+        this.declination = declination;
     }
 
-    public void setRightAscension(String rightAscension) {
-        this.rightAscension = rightAscension;
+    public String getRightAscension() {
+        return rightAscension;
     }
 
     public String getDeclination() {
         return declination;
     }
 
-    public void setDeclination(String declination) {
-        this.declination = declination;
-    }
-
     @SuppressWarnings("RedundantIfStatement")
     public boolean validate() {
         if (rightAscension != null && declination != null) {
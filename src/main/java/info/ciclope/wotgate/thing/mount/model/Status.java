@@ -2,7 +2,6 @@ package info.ciclope.wotgate.thing.mount.model;
 
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import info.ciclope.wotgate.util.InstantSerializer;
-import io.vertx.core.json.JsonObject;
 
 import java.time.Instant;
 
@@ -18,6 +17,8 @@ public class Status {
     @JsonSerialize(using = InstantSerializer.class)
     private Instant timestamp;
 
+    private String connection;
+
     public Status() {
         this.active = false;
         this.rightAscension = "";
@@ -26,10 +27,10 @@ public class Status {
         this.timestamp = Instant.now();
     }
 
-    public Status(JsonObject object) {
-        this.rightAscension = object.getString("rightAscension");
-        this.declination = object.getString("declination");
-        this.currentAction = object.getString("current_action");
+    public Status(MountReading reading) {
+        this.rightAscension = reading.getRightAscension();
+        this.declination = reading.getDeclination();
+        this.currentAction = reading.getCurrentAction();
         this.active = true;
         this.timestamp = Instant.now();
     }
@@ -73,4 +74,12 @@ public class Status {
     public void setTimestamp(Instant timestamp) {
         this.timestamp = timestamp;
     }
+
+    public String getConnection() {
+        return connection;
+    }
+
+    public void setConnection(String connection) {
+        this.connection = connection;
+    }
 }
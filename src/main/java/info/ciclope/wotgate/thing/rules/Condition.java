@@ -0,0 +1,83 @@
+package info.ciclope.wotgate.thing.rules;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Condition of a rule on an aggregate of a series of a thing over a sliding window:
+ * <pre>
+ * {"thing": "weatherstation", "series": "windSpeed", "aggregate": "avg", "window": 300000, "above": 50}
+ * </pre>
+ * The aggregate is one of "avg", "min", "max" or "rate" (change per second), "last" by default, and is compared with
+ * "above", "below" or both. A condition is never met while its window has no samples.
+ */
+class Condition {
+    private static final long DEFAULT_WINDOW = 60000; // 1 minute
+
+    private final String thing;
+    private final String series;
+    private final String aggregate;
+    private final Double above;
+    private final Double below;
+    private final SlidingWindow window;
+
+    Condition(JsonObject configuration) {
+        this.thing = configuration.getString("thing");
+        this.series = configuration.getString("series");
+        this.aggregate = configuration.getString("aggregate", "last");
+        this.above = configuration.getDouble("above");
+        this.below = configuration.getDouble("below");
+        this.window = new SlidingWindow(configuration.getLong("window", DEFAULT_WINDOW));
+
+        if (thing == null || series == null) {
+            throw new IllegalArgumentException("Condition without thing or series: " + configuration.encode());
+        } else if (above == null && below == null) {
+            throw new IllegalArgumentException("Condition without threshold: " + configuration.encode());
+        } else if (!aggregate.matches("last|avg|min|max|rate")) {
+            throw new IllegalArgumentException("Unknown aggregate " + aggregate);
+        }
+    }
+
+    String getThing() {
+        return thing;
+    }
+
+    /**
+     * Adds the value of its series from a telemetry sample of its thing, if the sample has a number for it.
+     */
+    void sampled(JsonObject sample) {
+        Object value = sample.getValue(series);
+        if (value instanceof Number) {
+            window.add(sample.getLong("timestamp"), ((Number) value).doubleValue());
+        }
+    }
+
+    double getValue(long now) {
+        window.expire(now);
+        switch (aggregate) {
+            case "avg":
+                return window.getAverage();
+            case "min":
+                return window.getMinimum();
+            case "max":
+                return window.getMaximum();
+            case "rate":
+                return window.getRate();
+            default:
+                return window.getLast();
+        }
+    }
+
+    boolean isMet(long now) {
+        double value = getValue(now);
+        if (Double.isNaN(value)) {
+            return false;
+        }
+
+        return (above == null || value > above) && (below == null || value < below);
+    }
+
+    @Override
+    public String toString() {
+        return aggregate + "(" + thing + "." + series + ")";
+    }
+}
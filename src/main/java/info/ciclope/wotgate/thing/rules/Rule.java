@@ -0,0 +1,116 @@
+package info.ciclope.wotgate.thing.rules;
+
+import info.ciclope.wotgate.util.Backoff;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Rule triggering an action once its conditions are met:
+ * <pre>
+ * {"name": "highWind", "when": "any", "conditions": [...],
+ *  "action": {"address": "dome.close", "params": {}}}
+ * </pre>
+ * With "when" "any" one condition suffices, and with "all" every condition must be met. The action is sent when the
+ * rule becomes met, retried with a backoff while it fails and the rule is still met, and sent again only after the
+ * rule has stopped being met.
+ */
+class Rule {
+    private static final long RETRY_DELAY = 5000; // 5 seconds
+    private static final long MAX_RETRY_DELAY = 120000; // 2 minutes
+
+    private final String name;
+    private final boolean all;
+    private final List<Condition> conditions;
+    private final String address;
+    private final JsonObject params;
+    private final Backoff backoff;
+    private boolean met;
+    private JsonObject lastAction;
+
+    Rule(JsonObject configuration) {
+        this.name = configuration.getString("name");
+        this.all = "all".equals(configuration.getString("when", "any"));
+        this.conditions = new ArrayList<>();
+        configuration.getJsonArray("conditions", new JsonArray())
+                .forEach(condition -> conditions.add(new Condition((JsonObject) condition)));
+        JsonObject action = configuration.getJsonObject("action", new JsonObject());
+        this.address = action.getString("address");
+        this.params = action.getJsonObject("params", new JsonObject());
+        this.backoff = new Backoff(RETRY_DELAY, MAX_RETRY_DELAY);
+
+        if (name == null || address == null || conditions.isEmpty()) {
+            throw new IllegalArgumentException("Rule without name, action or conditions: " + configuration.encode());
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    List<Condition> getConditions() {
+        return conditions;
+    }
+
+    String getAddress() {
+        return address;
+    }
+
+    JsonObject getParams() {
+        return params;
+    }
+
+    boolean isMet() {
+        return met;
+    }
+
+    /**
+     * Records the outcome of the action, returning the delay before retrying it if it failed.
+     */
+    long actionSent(long now, String failure) {
+        lastAction = new JsonObject().put("timestamp", now).put("outcome", failure == null ? "success" : "failure")
+                .put("failure", failure).put("attempts", backoff.getAttempts() + 1);
+        if (failure == null) {
+            backoff.reset();
+            return 0;
+        }
+
+        return backoff.nextDelay();
+    }
+
+    /**
+     * Evaluates the rule, returning whether it has just become met.
+     */
+    boolean evaluate(long now) {
+        boolean wasMet = met;
+        met = all ? conditions.stream().allMatch(condition -> condition.isMet(now))
+                : conditions.stream().anyMatch(condition -> condition.isMet(now));
+        if (!met) {
+            backoff.reset();
+        }
+
+        return met && !wasMet;
+    }
+
+    /**
+     * Returns the state of the rule, with the current aggregate of every condition and the outcome of its last action.
+     */
+    JsonObject getState(long now) {
+        JsonObject values = new JsonObject();
+        conditions.forEach(condition -> {
+            double value = condition.getValue(now);
+            values.put(condition.toString(), Double.isNaN(value) ? null : value);
+        });
+
+        return new JsonObject().put("met", met).put("values", values).put("lastAction", lastAction);
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + conditions.stream().map(Condition::toString)
+                .collect(Collectors.joining(all ? " and " : " or ")) + " -> " + address + ")";
+    }
+}
@@ -0,0 +1,137 @@
+package info.ciclope.wotgate.thing.rules;
+
+import com.google.inject.Inject;
+import info.ciclope.wotgate.metrics.Counter;
+import info.ciclope.wotgate.metrics.MetricsRegistry;
+import info.ciclope.wotgate.thing.AbstractThing;
+import info.ciclope.wotgate.thing.HandlerRegister;
+import info.ciclope.wotgate.thing.ReservationCheck;
+import info.ciclope.wotgate.thing.TelemetryReading;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates the rules of its "rules" configuration over the telemetry samples published by the things, sending the
+ * action of a rule to its thing once the rule is met, as a command of the gateway needing no reservation. Every
+ * sample updates the windows of the conditions on its thing and evaluates only the rules of that thing. A failed action
+ * is retried while its rule is still met.
+ */
+public class RuleEngineThing extends AbstractThing {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RuleEngineThing.class);
+
+    @Inject
+    private EventBus eventBus;
+
+    @Inject
+    private MetricsRegistry metricsRegistry;
+
+    private List<Rule> rules;
+    private Map<String, List<Condition>> conditionsByThing;
+    private Map<String, Set<Rule>> rulesByThing;
+    private List<MessageConsumer<JsonObject>> consumers;
+    private Map<Rule, Long> retryTimers;
+    private Counter actions;
+
+    @Override
+    public void startThing(Handler<AsyncResult<Void>> handler) {
+        rules = new ArrayList<>();
+        conditionsByThing = new HashMap<>();
+        rulesByThing = new HashMap<>();
+        consumers = new ArrayList<>();
+        retryTimers = new HashMap<>();
+        actions = metricsRegistry.counter("wotgate_rule_actions_total",
+                "Actions sent by the rules, by rule and outcome.", "rule", "outcome");
+
+        try {
+            config().getJsonArray("rules", new JsonArray()).forEach(rule -> rules.add(new Rule((JsonObject) rule)));
+        } catch (IllegalArgumentException | ClassCastException e) {
+            handler.handle(Future.failedFuture(e));
+            return;
+        }
+
+        rules.forEach(rule -> rule.getConditions().forEach(condition -> {
+            conditionsByThing.computeIfAbsent(condition.getThing(), thing -> new ArrayList<>()).add(condition);
+            rulesByThing.computeIfAbsent(condition.getThing(), thing -> new LinkedHashSet<>()).add(rule);
+        }));
+        conditionsByThing.keySet().forEach(thing -> consumers.add(eventBus.consumer(
+                thing + TelemetryReading.TELEMETRY, sample -> sampled(thing, sample.body()))));
+        rules.forEach(rule -> LOGGER.info("Rule " + rule));
+
+        handler.handle(Future.succeededFuture());
+    }
+
+    @Override
+    public void addHandlers(HandlerRegister register) {
+        register.addHandler(RulesInfo.STATUS, this::getStatus);
+    }
+
+    @Override
+    public void stopThing(Handler<AsyncResult<Void>> handler) {
+        consumers.forEach(MessageConsumer::unregister);
+        retryTimers.values().forEach(vertx::cancelTimer);
+        handler.handle(Future.succeededFuture());
+    }
+
+    private void getStatus(Message<JsonObject> message) {
+        long now = System.currentTimeMillis();
+        JsonObject status = new JsonObject();
+        rules.forEach(rule -> status.put(rule.getName(), rule.getState(now)));
+
+        message.reply(status);
+    }
+
+    private void sampled(String thing, JsonObject sample) {
+        conditionsByThing.get(thing).forEach(condition -> condition.sampled(sample));
+
+        long now = sample.getLong("timestamp");
+        rulesByThing.get(thing).forEach(rule -> {
+            boolean becameMet = rule.evaluate(now);
+            if (becameMet || !rule.isMet()) {
+                // A rule no longer met stops retrying, and a rule met again sends its action at once
+                Long retryTimer = retryTimers.remove(rule);
+                if (retryTimer != null) {
+                    vertx.cancelTimer(retryTimer);
+                }
+            }
+            if (becameMet) {
+                sendAction(rule);
+            }
+        });
+    }
+
+    private void sendAction(Rule rule) {
+        LOGGER.warn("Rule " + rule.getName() + " met, sending " + rule.getAddress());
+        DeliveryOptions options = new DeliveryOptions().addHeader(ReservationCheck.SYSTEM_HEADER, rule.getName());
+        eventBus.send(rule.getAddress(), rule.getParams().copy(), options, reply -> {
+            actions.labels(rule.getName(), reply.succeeded() ? "success" : "failure").increment();
+            long retryDelay = rule.actionSent(System.currentTimeMillis(),
+                    reply.succeeded() ? null : reply.cause().getMessage());
+            if (reply.failed()) {
+                LOGGER.error("Action of rule " + rule.getName() + " failed, retrying in " + retryDelay + " ms",
+                        reply.cause());
+                retryTimers.put(rule, vertx.setTimer(retryDelay, timer -> {
+                    retryTimers.remove(rule);
+                    if (rule.isMet()) {
+                        sendAction(rule);
+                    }
+                }));
+            }
+        });
+    }
+}
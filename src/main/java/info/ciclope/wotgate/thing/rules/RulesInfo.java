@@ -0,0 +1,7 @@
+package info.ciclope.wotgate.thing.rules;
+
+public class RulesInfo {
+    public static final String NAME = "rules";
+
+    public static final String STATUS = ".status";
+}
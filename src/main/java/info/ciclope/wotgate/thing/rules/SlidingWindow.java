@@ -0,0 +1,186 @@
+package info.ciclope.wotgate.thing.rules;
+
+/**
+ * Samples of a series within the last milliseconds of a window, with their mean, minimum, maximum and rate of change
+ * kept up to date as samples are added and expire: adding a sample costs amortized O(1) and reading any aggregate
+ * costs O(1), whatever the number of samples in the window.
+ * <p>
+ * Samples are numbered in order of arrival and held in a ring buffer grown on demand. The minimum and maximum are the
+ * heads of two monotonic queues of sample numbers, from which every sample is removed once at most.
+ */
+public class SlidingWindow {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long window;
+    private long[] timestamps;
+    private double[] values;
+    private long first;
+    private long next;
+    private double sum;
+    private final SequenceQueue minimums;
+    private final SequenceQueue maximums;
+
+    /**
+     * @param window milliseconds of the window
+     */
+    public SlidingWindow(long window) {
+        this.window = window;
+        this.timestamps = new long[INITIAL_CAPACITY];
+        this.values = new double[INITIAL_CAPACITY];
+        this.minimums = new SequenceQueue(INITIAL_CAPACITY);
+        this.maximums = new SequenceQueue(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds a sample, expiring the samples older than the window before it. Unknown values (NaN) are not added.
+     */
+    public void add(long timestamp, double value) {
+        expire(timestamp);
+        if (Double.isNaN(value)) {
+            return;
+        }
+
+        if (next - first == timestamps.length) {
+            grow();
+        }
+        int index = index(next);
+        timestamps[index] = timestamp;
+        values[index] = value;
+        sum += value;
+
+        while (!minimums.isEmpty() && value(minimums.last()) >= value) {
+            minimums.removeLast();
+        }
+        minimums.addLast(next);
+        while (!maximums.isEmpty() && value(maximums.last()) <= value) {
+            maximums.removeLast();
+        }
+        maximums.addLast(next);
+        next++;
+    }
+
+    /**
+     * Removes the samples older than the window ending at a timestamp.
+     */
+    public void expire(long timestamp) {
+        long oldest = timestamp - window;
+        while (first < next && timestamps[index(first)] <= oldest) {
+            sum -= values[index(first)];
+            if (minimums.first() == first) {
+                minimums.removeFirst();
+            }
+            if (maximums.first() == first) {
+                maximums.removeFirst();
+            }
+            first++;
+        }
+
+        if (first == next) {
+            // Discards the rounding errors accumulated while the window was in use
+            sum = 0;
+        }
+    }
+
+    public int size() {
+        return (int) (next - first);
+    }
+
+    public double getLast() {
+        return size() > 0 ? value(next - 1) : Double.NaN;
+    }
+
+    public double getAverage() {
+        return size() > 0 ? sum / size() : Double.NaN;
+    }
+
+    public double getMinimum() {
+        return size() > 0 ? value(minimums.first()) : Double.NaN;
+    }
+
+    public double getMaximum() {
+        return size() > 0 ? value(maximums.first()) : Double.NaN;
+    }
+
+    /**
+     * Returns the change per second from the oldest to the newest sample, NaN with less than two samples.
+     */
+    public double getRate() {
+        if (size() < 2) {
+            return Double.NaN;
+        }
+
+        int oldest = index(first);
+        int newest = index(next - 1);
+        long elapsed = timestamps[newest] - timestamps[oldest];
+        return elapsed > 0 ? (values[newest] - values[oldest]) * 1000 / elapsed : Double.NaN;
+    }
+
+    private double value(long sequence) {
+        return values[index(sequence)];
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % timestamps.length);
+    }
+
+    private void grow() {
+        long[] grownTimestamps = new long[timestamps.length * 2];
+        double[] grownValues = new double[values.length * 2];
+        for (long sequence = first; sequence < next; sequence++) {
+            grownTimestamps[(int) (sequence % grownTimestamps.length)] = timestamps[index(sequence)];
+            grownValues[(int) (sequence % grownValues.length)] = values[index(sequence)];
+        }
+        timestamps = grownTimestamps;
+        values = grownValues;
+        minimums.grow();
+        maximums.grow();
+    }
+
+    /**
+     * Double-ended queue of sample numbers in a ring buffer, never holding more numbers than the window samples.
+     */
+    private static class SequenceQueue {
+        private long[] sequences;
+        private int head;
+        private int size;
+
+        private SequenceQueue(int capacity) {
+            this.sequences = new long[capacity];
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private long first() {
+            return size > 0 ? sequences[head] : -1;
+        }
+
+        private long last() {
+            return sequences[(head + size - 1) % sequences.length];
+        }
+
+        private void addLast(long sequence) {
+            sequences[(head + size) % sequences.length] = sequence;
+            size++;
+        }
+
+        private void removeFirst() {
+            head = (head + 1) % sequences.length;
+            size--;
+        }
+
+        private void removeLast() {
+            size--;
+        }
+
+        private void grow() {
+            long[] grown = new long[sequences.length * 2];
+            for (int i = 0; i < size; i++) {
+                grown[i] = sequences[(head + i) % sequences.length];
+            }
+            sequences = grown;
+            head = 0;
+        }
+    }
+}
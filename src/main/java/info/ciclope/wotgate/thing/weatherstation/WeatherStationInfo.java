@@ -4,4 +4,5 @@ public class WeatherStationInfo {
     public static final String NAME = "weatherstation";
 
     public static final String STATUS = ".status";
+    public static final String HISTORY = ".history";
 }
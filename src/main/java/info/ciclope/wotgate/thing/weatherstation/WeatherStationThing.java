@@ -1,71 +1,263 @@
 package info.ciclope.wotgate.thing.weatherstation;
 
 import com.google.inject.Inject;
+import info.ciclope.wotgate.http.HttpHeader;
 import info.ciclope.wotgate.http.HttpStatus;
+import info.ciclope.wotgate.metrics.DeviceMetrics;
 import info.ciclope.wotgate.thing.AbstractThing;
 import info.ciclope.wotgate.thing.HandlerRegister;
+import info.ciclope.wotgate.thing.HistoryQuery;
+import info.ciclope.wotgate.thing.LivenessTracker;
+import info.ciclope.wotgate.thing.StatusSnapshotStore;
+import info.ciclope.wotgate.thing.TelemetryDecoder;
+import info.ciclope.wotgate.thing.weatherstation.database.WeatherDatabase;
 import info.ciclope.wotgate.thing.weatherstation.model.Status;
+import info.ciclope.wotgate.thing.weatherstation.model.WeatherReading;
+import info.ciclope.wotgate.util.Backoff;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
 
 import javax.inject.Named;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class WeatherStationThing extends AbstractThing {
-    private static final int UPDATE_INTERVAL = 300000; // 5 minutes
+    private static final Logger LOGGER = LoggerFactory.getLogger(WeatherStationThing.class);
+    // TODO: poner url correcta
+    private static final String API_PATH = "/api/estacion/montegancedo";
+    private static final long MIN_UPDATE_INTERVAL = 30000; // 30 seconds
+    private static final long MAX_UPDATE_INTERVAL = 300000; // 5 minutes
+    private static final long MAX_BACKOFF = 1800000; // 30 minutes
+    private static final long INACTIVE_TIME = 900000; // 15 minutes
+    private static final long PERSIST_INTERVAL = 60000; // 1 minute
+    private static final int PERSIST_BATCH = 100;
+    private static final int MAX_PENDING_SAMPLES = 1000;
 
     @Inject
     @Named("weatherstation")
     private WebClient webClient;
 
+    @Inject
+    private StatusSnapshotStore statusSnapshotStore;
+
+    @Inject
+    private DeviceMetrics deviceMetrics;
+
+    @Inject
+    private WeatherDatabase weatherDatabase;
+
+    @Inject
+    private LivenessTracker livenessTracker;
+
+    private final TelemetryDecoder<WeatherReading> decoder = new TelemetryDecoder<>(new WeatherReading(),
+            new WeatherReading());
+    private final double[] measurements = new double[decoder.getCurrent().getSeries().length];
+    private List<JsonArray> pendingSamples = new ArrayList<>();
+    private boolean persisting;
+    private long minUpdateInterval;
+    private long maxUpdateInterval;
+    private long updateInterval;
+    private long nextUpdate;
+    private Backoff backoff;
+    private String etag;
+    private String lastModified;
+    private boolean updating;
     private long timerId;
+    private long persistTimerId;
+    private LivenessTracker.Liveness liveness;
     private Status status;
 
     @Override
     public void startThing(Handler<AsyncResult<Void>> handler) {
-        status = new Status();
+        setStatus(new Status());
+        liveness = livenessTracker.track(WeatherStationInfo.NAME, config().getLong("inactiveTime", INACTIVE_TIME),
+                inactive -> stationInactive());
 
-        startUpdatingProcess();
-        handler.handle(Future.succeededFuture());
+        weatherDatabase.initDatabaseStorage(initialized -> {
+            if (initialized.failed()) {
+                // The station is still read, only its history is missing
+                LOGGER.error("Weather history database not available", initialized.cause());
+            }
+            startUpdatingProcess();
+            // Samples are inserted in batches, every interval or once a batch is full
+            persistTimerId = vertx.setPeriodic(config().getLong("persistInterval", PERSIST_INTERVAL),
+                    event -> persistSamples());
+            handler.handle(Future.succeededFuture());
+        });
     }
 
     @Override
     public void addHandlers(HandlerRegister handlerRegister) {
         handlerRegister.addHandler(WeatherStationInfo.STATUS, this::getStateProperty);
+        handlerRegister.addHandler(WeatherStationInfo.HISTORY, HistoryQuery.class, this::getHistory);
     }
 
     @Override
     public void stopThing(Handler<AsyncResult<Void>> handler) {
         stopUpdatingProcess();
+        livenessTracker.untrack(liveness);
+        vertx.cancelTimer(persistTimerId);
+        persistSamples();
         handler.handle(Future.succeededFuture());
     }
 
     private void startUpdatingProcess() {
+        minUpdateInterval = config().getLong("minUpdateInterval", MIN_UPDATE_INTERVAL);
+        maxUpdateInterval = config().getLong("maxUpdateInterval", MAX_UPDATE_INTERVAL);
+        backoff = new Backoff(minUpdateInterval, config().getLong("maxBackoff", MAX_BACKOFF));
+        updateInterval = maxUpdateInterval;
+        deviceMetrics.pollInterval(WeatherStationInfo.NAME, () -> nextUpdate / 1000.0);
+        updating = true;
         updateMeasurements();
-        timerId = vertx.setPeriodic(UPDATE_INTERVAL, event -> updateMeasurements());
     }
 
     private void stopUpdatingProcess() {
+        updating = false;
         vertx.cancelTimer(timerId);
     }
 
     private void getStateProperty(Message<JsonObject> message) {
-        message.reply(JsonObject.mapFrom(status));
+        message.reply(statusSnapshotStore.get(WeatherStationInfo.NAME));
     }
 
+    private void getHistory(Message<HistoryQuery> message) {
+        weatherDatabase.getHistory(message.body(), result -> {
+            if (result.succeeded()) {
+                message.reply(result.result());
+            } else {
+                message.fail(HttpStatus.INTERNAL_ERROR, "Internal Error");
+            }
+        });
+    }
+
+    /**
+     * Polls the station, asking only for measurements newer than the last ones received. The station is polled twice
+     * as often while its measurements change, down to "minUpdateInterval", and half as often while they do not, up to
+     * "maxUpdateInterval". Failed polls are retried with an exponential backoff, keeping the last measurements as
+     * stale meanwhile, until the station has not been read within "inactiveTime".
+     */
     private void updateMeasurements() {
-        // Make request to physical device
-        // TODO: poner url correcta
-        webClient.get("/api/estacion/montegancedo").send(event -> {
-            if (event.succeeded() && event.result().statusCode() == HttpStatus.OK) {
-                // Obtain response object
-                status = new Status(event.result().bodyAsJsonObject());
+        HttpRequest<Buffer> request = webClient.get(API_PATH);
+        if (etag != null) {
+            request.putHeader(HttpHeader.IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            request.putHeader(HttpHeader.IF_MODIFIED_SINCE, lastModified);
+        }
+
+        long start = System.nanoTime();
+        request.send(event -> {
+            Boolean changed = event.succeeded() ? decode(event.result()) : null;
+            deviceMetrics.webClientRequest(WeatherStationInfo.NAME, start, changed != null);
+            if (changed == null) {
+                nextUpdate = backoff.nextDelay();
+                setStale(true);
             } else {
-                status = new Status();
+                liveness.seen();
+                backoff.reset();
+                updateInterval = changed ? Math.max(minUpdateInterval, updateInterval / 2)
+                        : Math.min(maxUpdateInterval, updateInterval * 2);
+                nextUpdate = updateInterval;
+                setStale(false);
+            }
+
+            if (updating) {
+                timerId = vertx.setTimer(nextUpdate, timer -> updateMeasurements());
+            }
+        });
+    }
+
+    /**
+     * Decodes the measurements of a response, updating the status only if they changed. Returns whether they
+     * changed, false if not modified, or null if the response has no valid measurements.
+     */
+    private Boolean decode(HttpResponse<Buffer> response) {
+        if (response.statusCode() == HttpStatus.NOT_MODIFIED) {
+            // The measurements still hold, so they are sampled again for the history and the rules
+            addSample(decoder.getCurrent());
+            return false;
+        } else if (response.statusCode() != HttpStatus.OK || response.body() == null) {
+            return null;
+        }
+
+        try {
+            boolean changed = decoder.decode(response.body().getBytes());
+            if (changed) {
+                setStatus(new Status(decoder.getCurrent()));
+            }
+            addSample(decoder.getCurrent());
+            etag = response.getHeader(HttpHeader.ETAG);
+            lastModified = response.getHeader(HttpHeader.LAST_MODIFIED);
+            return changed;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void addSample(WeatherReading reading) {
+        long now = System.currentTimeMillis();
+        publishTelemetry(reading, now);
+        reading.sample(measurements);
+        pendingSamples.add(WeatherDatabase.sample(now, measurements, reading.getWindDirection()));
+        if (pendingSamples.size() >= config().getInteger("persistBatch", PERSIST_BATCH)) {
+            persistSamples();
+        }
+    }
+
+    private void persistSamples() {
+        if (persisting || pendingSamples.isEmpty()) {
+            return;
+        }
+
+        List<JsonArray> samples = pendingSamples;
+        pendingSamples = new ArrayList<>();
+        persisting = true;
+        weatherDatabase.insertSamples(samples, inserted -> {
+            persisting = false;
+            if (inserted.failed()) {
+                LOGGER.warn("Failed to persist " + samples.size() + " weather samples", inserted.cause());
+                // Retried with the next batch, unless the database has been failing for too long
+                if (samples.size() + pendingSamples.size() <= MAX_PENDING_SAMPLES) {
+                    samples.addAll(pendingSamples);
+                    pendingSamples = samples;
+                }
             }
         });
     }
+
+    /**
+     * Drops the last measurements, asking the station for its current ones again once it can be read.
+     */
+    private void stationInactive() {
+        decoder.reset();
+        etag = null;
+        lastModified = null;
+        setStatus(new Status());
+    }
+
+    /**
+     * Flags the last measurements as stale, or fresh again, keeping their values and timestamp.
+     */
+    private void setStale(boolean stale) {
+        if (status.isActive() && status.isStale() != stale) {
+            status.setStale(stale);
+            setStatus(status);
+        }
+    }
+
+    private void setStatus(Status status) {
+        this.status = status;
+        statusSnapshotStore.update(WeatherStationInfo.NAME, status);
+    }
 }
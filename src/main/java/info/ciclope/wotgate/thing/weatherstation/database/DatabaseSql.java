@@ -0,0 +1,57 @@
+package info.ciclope.wotgate.thing.weatherstation.database;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+class DatabaseSql {
+    // Measurements, in the order of the weather readings
+    static final String[] COLUMNS = {"temperature", "pressure", "humidity", "rain_fall", "wind_speed"};
+
+    static final String CREATE_SAMPLE_TABLE = "CREATE TABLE IF NOT EXISTS sample (" +
+            "timestamp INTEGER NOT NULL, " +
+            columns("%s REAL NOT NULL") + ", " +
+            "wind_direction TEXT);";
+
+    static final String CREATE_SAMPLE_INDEX = "CREATE INDEX IF NOT EXISTS sample_timestamp ON sample(timestamp);";
+
+    static final String INSERT_SAMPLE = "INSERT INTO sample(timestamp, " + columns("%s") + ", wind_direction) " +
+            "VALUES (?, " + columns("?") + ", ?);";
+
+    static final String SELECT_SAMPLES = "SELECT (timestamp - ?) / ? * ? + ? AS bucket, COUNT(*) AS samples, " +
+            columns("MIN(%1$s) AS %1$s_min, MAX(%1$s) AS %1$s_max, SUM(%1$s) AS %1$s_sum") + " " +
+            "FROM sample WHERE timestamp BETWEEN ? AND ? GROUP BY 1 ORDER BY 1;";
+
+    static String createRollupTable(Resolution resolution) {
+        return "CREATE TABLE IF NOT EXISTS " + resolution.getTable() + " (" +
+                "bucket INTEGER PRIMARY KEY, " +
+                "samples INTEGER NOT NULL, " +
+                columns("%1$s_min REAL NOT NULL, %1$s_max REAL NOT NULL, %1$s_sum REAL NOT NULL") + ");";
+    }
+
+    /**
+     * Creates the bucket of a rollup if new, with no samples, to be updated then with {@link #updateRollup}.
+     */
+    static String insertRollup(Resolution resolution) {
+        return "INSERT OR IGNORE INTO " + resolution.getTable() + "(bucket, samples, " +
+                columns("%1$s_min, %1$s_max, %1$s_sum") + ") VALUES (?, 0, " + columns("?, ?, 0") + ");";
+    }
+
+    /**
+     * Adds the aggregates of a batch of samples to the bucket of a rollup.
+     */
+    static String updateRollup(Resolution resolution) {
+        return "UPDATE " + resolution.getTable() + " SET samples = samples + ?, " +
+                columns("%1$s_min = min(%1$s_min, ?), %1$s_max = max(%1$s_max, ?), %1$s_sum = %1$s_sum + ?") + " " +
+                "WHERE bucket = ?;";
+    }
+
+    static String selectRollup(Resolution resolution) {
+        return "SELECT (bucket - ?) / ? * ? + ? AS bucket, SUM(samples) AS samples, " +
+                columns("MIN(%1$s_min) AS %1$s_min, MAX(%1$s_max) AS %1$s_max, SUM(%1$s_sum) AS %1$s_sum") + " " +
+                "FROM " + resolution.getTable() + " WHERE bucket BETWEEN ? AND ? GROUP BY 1 ORDER BY 1;";
+    }
+
+    private static String columns(String format) {
+        return Arrays.stream(COLUMNS).map(column -> String.format(format, column)).collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,48 @@
+package info.ciclope.wotgate.thing.weatherstation.database;
+
+/**
+ * Resolutions of the rollup tables of the weather samples.
+ */
+enum Resolution {
+    MINUTE("minute", 60000),
+    HOUR("hour", 3600000),
+    DAY("day", 86400000);
+
+    private final String name;
+    private final long milliseconds;
+
+    Resolution(String name, long milliseconds) {
+        this.name = name;
+        this.milliseconds = milliseconds;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getTable() {
+        return "rollup_" + name;
+    }
+
+    long getMilliseconds() {
+        return milliseconds;
+    }
+
+    long bucketOf(long timestamp) {
+        return timestamp - Math.floorMod(timestamp, milliseconds);
+    }
+
+    /**
+     * Returns the coarsest resolution not coarser than a step, or null if the step is finer than every rollup.
+     */
+    static Resolution forStep(long step) {
+        Resolution resolution = null;
+        for (Resolution candidate : values()) {
+            if (candidate.milliseconds <= step) {
+                resolution = candidate;
+            }
+        }
+
+        return resolution;
+    }
+}
@@ -0,0 +1,213 @@
+package info.ciclope.wotgate.thing.weatherstation.database;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import info.ciclope.wotgate.storage.DatabaseStorage;
+import info.ciclope.wotgate.thing.HistoryQuery;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.sql.ResultSet;
+
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Weather samples, kept raw and in minute, hour and day rollups with the minimum, maximum and sum of every measurement.
+ * The rollups are updated in the same transaction as the samples are inserted, so long ranges are read from a rollup
+ * instead of scanning the samples.
+ */
+@Singleton
+public class WeatherDatabase {
+    // Measurements, as named in the weather readings
+    private static final String[] SERIES = {"temperature", "pressure", "humidity", "rainFall", "windSpeed"};
+
+    private final DatabaseStorage databaseStorage;
+
+    @Inject
+    public WeatherDatabase(@Named("weatherstation") DatabaseStorage databaseStorage) {
+        this.databaseStorage = databaseStorage;
+    }
+
+    public void initDatabaseStorage(Handler<AsyncResult<Void>> handler) {
+        List<String> batch = new ArrayList<>();
+
+        batch.add(DatabaseSql.CREATE_SAMPLE_TABLE);
+        batch.add(DatabaseSql.CREATE_SAMPLE_INDEX);
+        for (Resolution resolution : Resolution.values()) {
+            batch.add(DatabaseSql.createRollupTable(resolution));
+        }
+
+        databaseStorage.executeBatch(batch, handler);
+    }
+
+    /**
+     * Creates a sample to insert: its timestamp in epoch milliseconds, the measurements in the order of the weather
+     * readings and the wind direction.
+     */
+    public static JsonArray sample(long timestamp, double[] measurements, String windDirection) {
+        JsonArray sample = new JsonArray().add(timestamp);
+        for (double measurement : measurements) {
+            sample.add(measurement);
+        }
+
+        return windDirection != null ? sample.add(windDirection) : sample.addNull();
+    }
+
+    /**
+     * Inserts a batch of samples and adds them to the rollups, all of it or nothing.
+     */
+    public void insertSamples(List<JsonArray> samples, Handler<AsyncResult<Void>> handler) {
+        databaseStorage.startTransactionConnection(connection -> {
+            if (connection.failed()) {
+                handler.handle(Future.failedFuture(connection.cause()));
+                return;
+            }
+
+            Integer id = connection.result();
+            Future<Void> inserted = batch(id, DatabaseSql.INSERT_SAMPLE, samples);
+            for (Resolution resolution : Resolution.values()) {
+                Map<Long, Aggregate> buckets = aggregate(resolution, samples);
+                List<JsonArray> newBuckets = new ArrayList<>();
+                List<JsonArray> updates = new ArrayList<>();
+                buckets.forEach((bucket, aggregate) -> {
+                    newBuckets.add(aggregate.toInsertParameters(bucket));
+                    updates.add(aggregate.toUpdateParameters(bucket));
+                });
+                inserted = inserted
+                        .compose(v -> batch(id, DatabaseSql.insertRollup(resolution), newBuckets))
+                        .compose(v -> batch(id, DatabaseSql.updateRollup(resolution), updates));
+            }
+
+            inserted.setHandler(result -> {
+                if (result.succeeded()) {
+                    databaseStorage.stopTransactionConnection(id, handler);
+                } else {
+                    databaseStorage.rollbackTransaction(id, rollback ->
+                            databaseStorage.stopTransactionConnection(id, stop ->
+                                    handler.handle(Future.failedFuture(result.cause()))));
+                }
+            });
+        });
+    }
+
+    /**
+     * Returns the measurements of the query in its steps, read from the coarsest rollup not coarser than its step:
+     * <pre>
+     * {"from": 0, "to": 0, "step": 0, "resolution": "hour", "timestamps": [...],
+     *  "series": {"name": [...]}, "min": {"name": [...]}, "max": {"name": [...]}}
+     * </pre>
+     * The series are the means of the measurements, and the timestamp of a step is its start. Read from a rollup, the
+     * query starts at the start of the bucket holding "from", which is the "from" returned, and ends with the bucket
+     * holding "to", so its edges are rounded to the resolution.
+     */
+    public void getHistory(HistoryQuery query, Handler<AsyncResult<JsonObject>> handler) {
+        Resolution resolution = Resolution.forStep(query.getStep());
+        String select = resolution != null ? DatabaseSql.selectRollup(resolution) : DatabaseSql.SELECT_SAMPLES;
+        long from = resolution != null ? resolution.bucketOf(query.getFrom()) : query.getFrom();
+        JsonArray params = new JsonArray()
+                .add(from).add(query.getStep()).add(query.getStep()).add(from)
+                .add(from).add(query.getTo());
+
+        databaseStorage.queryWithParameters(select, params, result -> {
+            if (result.succeeded()) {
+                handler.handle(Future.succeededFuture(toHistory(query, from, resolution, result.result())));
+            } else {
+                handler.handle(Future.failedFuture(result.cause()));
+            }
+        });
+    }
+
+    private Future<Void> batch(Integer connection, String update, List<JsonArray> batch) {
+        Future<Void> future = Future.future();
+        databaseStorage.executeBatchWithParameters(connection, update, batch, future);
+        return future;
+    }
+
+    private static Map<Long, Aggregate> aggregate(Resolution resolution, List<JsonArray> samples) {
+        Map<Long, Aggregate> buckets = new TreeMap<>();
+        samples.forEach(sample -> buckets.computeIfAbsent(resolution.bucketOf(sample.getLong(0)),
+                bucket -> new Aggregate()).add(sample));
+
+        return buckets;
+    }
+
+    private static JsonObject toHistory(HistoryQuery query, long from, Resolution resolution, ResultSet resultSet) {
+        JsonArray timestamps = new JsonArray();
+        JsonObject means = new JsonObject();
+        JsonObject minimums = new JsonObject();
+        JsonObject maximums = new JsonObject();
+        for (String series : SERIES) {
+            means.put(series, new JsonArray());
+            minimums.put(series, new JsonArray());
+            maximums.put(series, new JsonArray());
+        }
+
+        for (JsonObject row : resultSet.getRows()) {
+            timestamps.add(row.getLong("bucket"));
+            long samples = row.getLong("samples");
+            for (int i = 0; i < SERIES.length; i++) {
+                String column = DatabaseSql.COLUMNS[i];
+                means.getJsonArray(SERIES[i]).add(row.getDouble(column + "_sum") / samples);
+                minimums.getJsonArray(SERIES[i]).add(row.getDouble(column + "_min"));
+                maximums.getJsonArray(SERIES[i]).add(row.getDouble(column + "_max"));
+            }
+        }
+
+        return new JsonObject()
+                .put("from", from)
+                .put("to", query.getTo())
+                .put("step", query.getStep())
+                .put("resolution", resolution != null ? resolution.getName() : "sample")
+                .put("timestamps", timestamps)
+                .put("series", means)
+                .put("min", minimums)
+                .put("max", maximums);
+    }
+
+    private static class Aggregate {
+        private final double[] minimums;
+        private final double[] maximums;
+        private final double[] sums;
+        private int samples;
+
+        private Aggregate() {
+            minimums = new double[DatabaseSql.COLUMNS.length];
+            maximums = new double[DatabaseSql.COLUMNS.length];
+            sums = new double[DatabaseSql.COLUMNS.length];
+        }
+
+        private void add(JsonArray sample) {
+            for (int i = 0; i < sums.length; i++) {
+                double value = sample.getDouble(i + 1);
+                minimums[i] = samples == 0 ? value : Math.min(minimums[i], value);
+                maximums[i] = samples == 0 ? value : Math.max(maximums[i], value);
+                sums[i] += value;
+            }
+            samples++;
+        }
+
+        private JsonArray toInsertParameters(long bucket) {
+            JsonArray parameters = new JsonArray().add(bucket);
+            for (int i = 0; i < sums.length; i++) {
+                parameters.add(minimums[i]).add(maximums[i]);
+            }
+
+            return parameters;
+        }
+
+        private JsonArray toUpdateParameters(long bucket) {
+            JsonArray parameters = new JsonArray().add(samples);
+            for (int i = 0; i < sums.length; i++) {
+                parameters.add(minimums[i]).add(maximums[i]).add(sums[i]);
+            }
+
+            return parameters.add(bucket);
+        }
+    }
+}
@@ -2,7 +2,6 @@ package info.ciclope.wotgate.thing.weatherstation.model;
 
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import info.ciclope.wotgate.util.InstantSerializer;
-import io.vertx.core.json.JsonObject;
 
 import java.time.Instant;
 
@@ -21,6 +20,9 @@ public class Status {
 
     private boolean active;
 
+    // The last measurements are kept, flagged as stale, while the station cannot be read
+    private boolean stale;
+
     @JsonSerialize(using = InstantSerializer.class)
     private Instant timestamp;
 
@@ -30,15 +32,13 @@ public class Status {
         this.timestamp = Instant.now();
     }
 
-    public Status(JsonObject parentObject) {
-        JsonObject object = parentObject.getJsonObject("Estacion");
-
-        this.temperature = object.getDouble("Temperatura");
-        this.pressure = object.getDouble("Presion");
-        this.humidity = object.getDouble("Humedad");
-        this.rainFall = object.getDouble("Precipitacion");
-        this.windSpeed = object.getDouble("Velocidad viento");
-        this.windDirection = object.getString("Direccion viento");
+    public Status(WeatherReading reading) {
+        this.temperature = reading.getTemperature();
+        this.pressure = reading.getPressure();
+        this.humidity = reading.getHumidity();
+        this.rainFall = reading.getRainFall();
+        this.windSpeed = reading.getWindSpeed();
+        this.windDirection = reading.getWindDirection();
         this.active = true;
         this.timestamp = Instant.now();
     }
@@ -99,6 +99,14 @@ public class Status {
         this.active = active;
     }
 
+    public boolean isStale() {
+        return stale;
+    }
+
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
     public Instant getTimestamp() {
         return timestamp;
     }
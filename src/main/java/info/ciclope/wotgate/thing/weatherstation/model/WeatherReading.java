@@ -0,0 +1,116 @@
+package info.ciclope.wotgate.thing.weatherstation.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import info.ciclope.wotgate.thing.TelemetryReading;
+
+import java.io.IOException;
+
+/**
+ * Reading of the weather station, whose measurements come inside an "Estacion" object. Every measurement but the wind
+ * direction is required.
+ */
+public class WeatherReading extends TelemetryReading<WeatherReading> {
+    private static final String[] SERIES = {"temperature", "pressure", "humidity", "rainFall", "windSpeed"};
+    private static final int ALL_SERIES = (1 << SERIES.length) - 1;
+
+    private double temperature;
+    private double pressure;
+    private double humidity;
+    private double rainFall;
+    private double windSpeed;
+    private String windDirection;
+
+    public double getTemperature() {
+        return temperature;
+    }
+
+    public double getPressure() {
+        return pressure;
+    }
+
+    public double getHumidity() {
+        return humidity;
+    }
+
+    public double getRainFall() {
+        return rainFall;
+    }
+
+    public double getWindSpeed() {
+        return windSpeed;
+    }
+
+    public String getWindDirection() {
+        return windDirection;
+    }
+
+    @Override
+    protected void copyFrom(WeatherReading other) {
+        temperature = other.temperature;
+        pressure = other.pressure;
+        humidity = other.humidity;
+        rainFall = other.rainFall;
+        windSpeed = other.windSpeed;
+        windDirection = other.windDirection;
+    }
+
+    @Override
+    protected void readField(String name, JsonParser parser) throws IOException {
+        switch (name) {
+            case "Estacion":
+                if (parser.currentToken() == JsonToken.START_OBJECT) {
+                    readObject(parser);
+                } else {
+                    parser.skipChildren();
+                }
+                break;
+            case "Temperatura":
+                temperature = readNumber(parser, 0, temperature);
+                break;
+            case "Presion":
+                pressure = readNumber(parser, 1, pressure);
+                break;
+            case "Humedad":
+                humidity = readNumber(parser, 2, humidity);
+                break;
+            case "Precipitacion":
+                rainFall = readNumber(parser, 3, rainFall);
+                break;
+            case "Velocidad viento":
+                windSpeed = readNumber(parser, 4, windSpeed);
+                break;
+            case "Direccion viento":
+                windDirection = readText(parser, windDirection);
+                break;
+            default:
+                parser.skipChildren();
+        }
+    }
+
+    @Override
+    protected boolean sameAs(WeatherReading other) {
+        return temperature == other.temperature && pressure == other.pressure && humidity == other.humidity
+                && rainFall == other.rainFall && windSpeed == other.windSpeed
+                && sameText(windDirection, other.windDirection);
+    }
+
+    @Override
+    protected int getRequiredSeries() {
+        return ALL_SERIES;
+    }
+
+    @Override
+    public String[] getSeries() {
+        return SERIES;
+    }
+
+    @Override
+    public void sample(double[] values) {
+        values[0] = temperature;
+        values[1] = pressure;
+        values[2] = humidity;
+        values[3] = rainFall;
+        values[4] = windSpeed;
+    }
+}
@@ -0,0 +1,86 @@
+package info.ciclope.wotgate.trace;
+
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Timings of the hops of a request, identified by its request ID. The ID travels in the headers of the event bus
+ * messages, and every thing handling a traced message returns its own timings in the headers of its reply, so the
+ * HTTP layer can report all of them in the Server-Timing header of the response.
+ */
+public class Trace {
+    public static final String REQUEST_ID_HEADER = "requestId";
+    public static final String TIMING_HEADER = "serverTiming";
+
+    private final String requestId;
+    private final List<String> timings;
+
+    public Trace(String requestId) {
+        this.requestId = requestId;
+        this.timings = new ArrayList<>();
+    }
+
+    /**
+     * Returns the trace of a received message, empty if the message is not part of a traced request.
+     */
+    public static Trace of(Message<?> message) {
+        if (message instanceof Traced) {
+            return ((Traced) message).getTrace();
+        }
+
+        return new Trace(message.headers().get(REQUEST_ID_HEADER));
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public boolean isTraced() {
+        return requestId != null;
+    }
+
+    /**
+     * Returns the options to send messages on behalf of the traced request.
+     */
+    public DeliveryOptions getDeliveryOptions() {
+        DeliveryOptions options = new DeliveryOptions();
+        if (isTraced()) {
+            options.addHeader(REQUEST_ID_HEADER, requestId);
+        }
+
+        return options;
+    }
+
+    /**
+     * Adds the timing of a hop started at the given {@link System#nanoTime()}.
+     */
+    public void addTiming(String name, String description, long start) {
+        if (!isTraced()) {
+            return;
+        }
+
+        double duration = Math.round((System.nanoTime() - start) / 100000.0) / 10.0;
+        StringBuilder timing = new StringBuilder(name).append(";dur=").append(duration);
+        if (description != null) {
+            timing.append(";desc=\"").append(description).append('"');
+        }
+        timings.add(timing.toString());
+    }
+
+    /**
+     * Adds the timings returned in the reply of a thing.
+     */
+    public void addTimings(Message<?> reply) {
+        String replyTimings = reply.headers().get(TIMING_HEADER);
+        if (isTraced() && replyTimings != null && !replyTimings.isEmpty()) {
+            timings.add(replyTimings);
+        }
+    }
+
+    public String getServerTiming() {
+        return String.join(", ", timings);
+    }
+}
@@ -0,0 +1,8 @@
+package info.ciclope.wotgate.trace;
+
+/**
+ * Message carrying the trace of the request it belongs to.
+ */
+public interface Traced {
+    Trace getTrace();
+}
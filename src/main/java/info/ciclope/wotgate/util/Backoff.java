@@ -0,0 +1,43 @@
+package info.ciclope.wotgate.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff between retries, doubling from an initial delay up to a maximum. Each delay is jittered between
+ * its half and its whole, so devices reconnecting at once do not retry in step. Not thread safe.
+ */
+public class Backoff {
+    private final long initialDelay;
+    private final long maxDelay;
+    private int attempts;
+
+    public Backoff(long initialDelay, long maxDelay) {
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Returns the delay before the next retry and counts it as an attempt.
+     */
+    public long nextDelay() {
+        long delay = getMaxDelay(attempts++);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    public void reset() {
+        attempts = 0;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    private long getMaxDelay(int attempt) {
+        // Stop doubling before the shift overflows
+        if (attempt >= Long.numberOfLeadingZeros(initialDelay) - 1) {
+            return maxDelay;
+        }
+
+        return Math.min(initialDelay << attempt, maxDelay);
+    }
+}
@@ -0,0 +1,54 @@
+package info.ciclope.wotgate.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket refilled continuously at a fixed rate, up to its capacity. Not thread safe.
+ */
+public class TokenBucket {
+    private final double capacity;
+    private final double refillPerNanosecond;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double capacity, double refillPerSecond, long now) {
+        this.capacity = capacity;
+        this.refillPerNanosecond = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+        this.lastRefill = now;
+    }
+
+    public boolean tryConsume(long now) {
+        refill(now);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Nanoseconds until the next token is available, 0 if there is one already.
+     */
+    public long getWaitTime(long now) {
+        refill(now);
+        if (tokens >= 1) {
+            return 0;
+        }
+
+        return (long) Math.ceil((1 - tokens) / refillPerNanosecond);
+    }
+
+    public boolean isFull(long now) {
+        refill(now);
+        return tokens >= capacity;
+    }
+
+    private void refill(long now) {
+        if (now > lastRefill) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNanosecond);
+            lastRefill = now;
+        }
+    }
+}
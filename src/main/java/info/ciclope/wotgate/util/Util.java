@@ -1,6 +1,7 @@
 package info.ciclope.wotgate.util;
 
 import info.ciclope.wotgate.thing.gatekeeper.GateKeeperInfo;
+import info.ciclope.wotgate.trace.Trace;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
@@ -11,16 +12,25 @@ import io.vertx.core.json.JsonObject;
 
 public class Util {
 
-    public static void checkActualReservation(String username, EventBus eventBus, Handler<AsyncResult<Boolean>> handler) {
+    public static void checkActualReservation(String username, EventBus eventBus, Trace trace,
+                                              Handler<AsyncResult<Boolean>> handler) {
         Future<Message<JsonObject>> userFuture = Future.future();
         Future<Message<JsonObject>> reservationFuture = Future.future();
 
+        long start = System.nanoTime();
         JsonObject params = new JsonObject().put("username", username);
-        eventBus.send(GateKeeperInfo.NAME + GateKeeperInfo.GET_USER, params, userFuture);
-        eventBus.send(GateKeeperInfo.NAME + GateKeeperInfo.GET_ACTUAL_RESERVATION, null, reservationFuture);
+        eventBus.send(GateKeeperInfo.NAME + GateKeeperInfo.GET_USER, params, trace.getDeliveryOptions(), userFuture);
+        eventBus.send(GateKeeperInfo.NAME + GateKeeperInfo.GET_ACTUAL_RESERVATION, null, trace.getDeliveryOptions(),
+                reservationFuture);
 
         CompositeFuture.all(userFuture, reservationFuture).setHandler(allCompleted -> {
+            trace.addTiming("reservation", null, start);
             if (allCompleted.succeeded()) {
+                //noinspection unchecked
+                trace.addTimings((Message<JsonObject>) allCompleted.result().resultAt(0));
+                //noinspection unchecked
+                trace.addTimings((Message<JsonObject>) allCompleted.result().resultAt(1));
+
                 //noinspection unchecked
                 long userId = ((Message<JsonObject>) allCompleted.result().resultAt(0)).body().getLong("id");
                 //noinspection unchecked
@@ -0,0 +1,50 @@
+package info.ciclope.wotgate.codec;
+
+import info.ciclope.wotgate.thing.StatusSnapshot;
+import info.ciclope.wotgate.thing.mount.model.Movement;
+import info.ciclope.wotgate.thing.mount.model.MountCommand;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class JsonMessageCodecTest {
+
+    @Test
+    public void passesLocalMessagesByReference() {
+        MountCommand command = MountCommand.move("user", new Movement("10:20", "-30:40"));
+
+        assertSame(command, new JsonMessageCodec<>(MountCommand.class).transform(command));
+    }
+
+    @Test
+    public void encodesCommandsAsJsonOnTheWire() {
+        JsonMessageCodec<MountCommand> codec = new JsonMessageCodec<>(MountCommand.class);
+        Buffer wire = Buffer.buffer("prefix");
+        codec.encodeToWire(wire, MountCommand.move("user", new Movement("10:20", "-30:40")));
+
+        MountCommand decoded = codec.decodeFromWire("prefix".length(), wire);
+
+        assertEquals("user", decoded.getUsername());
+        assertEquals("10:20", decoded.getMovement().getRightAscension());
+        assertEquals("-30:40", decoded.getMovement().getDeclination());
+        assertNull(decoded.getDirection());
+    }
+
+    @Test
+    public void encodesSnapshotsWithTheirBodyOnTheWire() {
+        StatusSnapshotCodec codec = new StatusSnapshotCodec();
+        Buffer wire = Buffer.buffer();
+        codec.encodeToWire(wire, new StatusSnapshot("dome", 3, "\"dome-1-3\"", Buffer.buffer("{\"open\":true}")));
+
+        StatusSnapshot decoded = codec.decodeFromWire(0, wire);
+
+        assertEquals("dome", decoded.getThingName());
+        assertEquals(3, decoded.getVersion());
+        assertEquals("\"dome-1-3\"", decoded.getEtag());
+        assertEquals(new JsonObject().put("open", true), new JsonObject(decoded.getBody()));
+    }
+}
@@ -0,0 +1,47 @@
+package info.ciclope.wotgate.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void scrapesCountersWithEscapedLabels() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("requests_total", "Requests.", "route").labels("/a\"b").increment(3);
+
+        String scrape = registry.scrape();
+
+        assertTrue(scrape.contains("# HELP requests_total Requests.\n"));
+        assertTrue(scrape.contains("# TYPE requests_total counter\n"));
+        assertTrue(scrape.contains("requests_total{route=\"/a\\\"b\"} 3\n"));
+    }
+
+    @Test
+    public void scrapesCumulativeHistogramBuckets() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Histogram.Child histogram = registry.histogram("latency_seconds", "Latency.").labels();
+        histogram.observe(0.003);
+        histogram.observe(0.2);
+        histogram.observe(20);
+
+        String scrape = registry.scrape();
+
+        assertTrue(scrape.contains("latency_seconds_bucket{le=\"0.0025\"} 0\n"));
+        assertTrue(scrape.contains("latency_seconds_bucket{le=\"0.005\"} 1\n"));
+        assertTrue(scrape.contains("latency_seconds_bucket{le=\"0.25\"} 2\n"));
+        assertTrue(scrape.contains("latency_seconds_bucket{le=\"10.0\"} 2\n"));
+        assertTrue(scrape.contains("latency_seconds_bucket{le=\"+Inf\"} 3\n"));
+        assertTrue(scrape.contains("latency_seconds_count 3\n"));
+    }
+
+    @Test
+    public void registersEachMetricOnce() {
+        MetricsRegistry registry = new MetricsRegistry();
+
+        assertSame(registry.counter("events_total", "Events.", "type"),
+                registry.counter("events_total", "Events.", "type"));
+    }
+}
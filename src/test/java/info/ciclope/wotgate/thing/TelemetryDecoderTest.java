@@ -0,0 +1,95 @@
+package info.ciclope.wotgate.thing;
+
+import info.ciclope.wotgate.thing.dome.model.DomeReading;
+import info.ciclope.wotgate.thing.weatherstation.model.WeatherReading;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class TelemetryDecoderTest {
+
+    @Test
+    public void testChangesOnlyWhenValuesChange() throws IOException {
+        TelemetryDecoder<DomeReading> decoder = new TelemetryDecoder<>(new DomeReading(), new DomeReading());
+
+        assertTrue(decoder.decode(bytes("{\"azimuth\": 12.5, \"supply_voltage\": 12, \"current_action\": \"none\", "
+                + "\"shutter\": \"closed\", \"unknown\": {\"nested\": [1, 2]}}")));
+        DomeReading first = decoder.getCurrent();
+        assertEquals(12.5, first.getAzimuth(), 0);
+        assertEquals(12, first.getSupplyVoltage(), 0);
+        assertEquals("closed", first.getShutter());
+
+        assertFalse(decoder.decode(bytes("{\"azimuth\": 12.5, \"supply_voltage\": 12.0, "
+                + "\"current_action\": \"none\", \"shutter\": \"closed\"}")));
+        assertSame(first, decoder.getCurrent());
+
+        assertTrue(decoder.decode(bytes("{\"shutter\": \"open\"}")));
+        assertEquals("open", decoder.getCurrent().getShutter());
+        assertEquals(12.5, decoder.getCurrent().getAzimuth(), 0);
+        assertSame(first.getCurrentAction(), decoder.getCurrent().getCurrentAction());
+    }
+
+    @Test
+    public void testResetChangesWithSameValues() throws IOException {
+        TelemetryDecoder<DomeReading> decoder = new TelemetryDecoder<>(new DomeReading(), new DomeReading());
+        byte[] message = bytes("{\"azimuth\": 1, \"supply_voltage\": 12}");
+
+        assertTrue(decoder.decode(message));
+        assertFalse(decoder.decode(message));
+        decoder.reset();
+        assertTrue(decoder.decode(message));
+    }
+
+    @Test
+    public void testNestedObject() throws IOException {
+        TelemetryDecoder<WeatherReading> decoder = new TelemetryDecoder<>(new WeatherReading(), new WeatherReading());
+
+        assertTrue(decoder.decode(bytes("{\"Estacion\": {\"Temperatura\": 21.3, \"Presion\": 1013, \"Humedad\": 40, "
+                + "\"Precipitacion\": 0, \"Velocidad viento\": 4, \"Direccion viento\": \"NE\"}}")));
+        assertEquals(21.3, decoder.getCurrent().getTemperature(), 0);
+        assertEquals(4, decoder.getCurrent().getWindSpeed(), 0);
+        assertEquals("NE", decoder.getCurrent().getWindDirection());
+    }
+
+    @Test
+    public void testRejectsIncompleteUntilComplete() throws IOException {
+        TelemetryDecoder<WeatherReading> decoder = new TelemetryDecoder<>(new WeatherReading(), new WeatherReading());
+        for (String message : new String[]{"{}", "{\"error\": \"unavailable\"}",
+                "{\"Estacion\": {\"Temperatura\": 21.3}}",
+                "{\"Estacion\": {\"Temperatura\": 21.3, \"Presion\": 1013, \"Humedad\": \"40\", "
+                        + "\"Precipitacion\": 0, \"Velocidad viento\": 4}}"}) {
+            try {
+                decoder.decode(bytes(message));
+                fail("Incomplete message decoded: " + message);
+            } catch (IOException e) {
+                assertEquals(0, decoder.getCurrent().getTemperature(), 0);
+            }
+        }
+
+        assertTrue(decoder.decode(bytes("{\"Estacion\": {\"Temperatura\": 21.3, \"Presion\": 1013, "
+                + "\"Humedad\": 40, \"Precipitacion\": 0, \"Velocidad viento\": 4}}")));
+        assertTrue(decoder.decode(bytes("{\"Estacion\": {\"Temperatura\": 22}}")));
+        assertEquals(22, decoder.getCurrent().getTemperature(), 0);
+        assertEquals(1013, decoder.getCurrent().getPressure(), 0);
+
+        decoder.reset();
+        try {
+            decoder.decode(bytes("{\"Estacion\": {\"Temperatura\": 23}}"));
+            fail("Incomplete message decoded after a reset");
+        } catch (IOException e) {
+            assertEquals(22, decoder.getCurrent().getTemperature(), 0);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsNotObject() throws IOException {
+        new TelemetryDecoder<>(new DomeReading(), new DomeReading()).decode(bytes("[1, 2]"));
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
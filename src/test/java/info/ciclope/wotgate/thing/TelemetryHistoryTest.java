@@ -0,0 +1,95 @@
+package info.ciclope.wotgate.thing;
+
+import com.fasterxml.jackson.core.JsonParser;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TelemetryHistoryTest {
+
+    @Test
+    public void testCapacityFromBudget() {
+        // 8 bytes of timestamp and 16 of values per sample
+        assertEquals(100, new TelemetryHistory(2400, new String[]{"a", "b"}).getCapacity());
+    }
+
+    @Test
+    public void testOldestSamplesReplaced() {
+        TelemetryHistory history = new TelemetryHistory(16 * 4, new String[]{"value"});
+        TestReading reading = new TestReading();
+        for (int i = 0; i < 10; i++) {
+            reading.value = i;
+            history.record(1000 + i, reading);
+        }
+
+        assertEquals(4, history.size());
+        JsonObject result = history.query(new HistoryQuery(0, 2000, 1));
+        assertEquals(new JsonArray().add(1006L).add(1007L).add(1008L).add(1009L), result.getJsonArray("timestamps"));
+        assertEquals(new JsonArray().add(6.0).add(7.0).add(8.0).add(9.0),
+                result.getJsonObject("series").getJsonArray("value"));
+    }
+
+    @Test
+    public void testDownsampledInRange() {
+        TelemetryHistory history = new TelemetryHistory(1 << 20, new String[]{"value"});
+        TestReading reading = new TestReading();
+        for (int i = 0; i < 100; i++) {
+            reading.value = i % 10 == 5 ? Double.NaN : i;
+            history.record(i * 100, reading);
+        }
+
+        JsonObject result = history.query(new HistoryQuery(2000, 3999, 1000));
+        assertEquals(new JsonArray().add(2000L).add(3000L), result.getJsonArray("timestamps"));
+        // Means of 20..29 and 30..39 without the unknown values
+        assertEquals(new JsonArray().add(220.0 / 9).add(310.0 / 9),
+                result.getJsonObject("series").getJsonArray("value"));
+    }
+
+    @Test
+    public void testQueryParameters() {
+        HistoryQuery lastHour = HistoryQuery.of(null, null, null, 7200000);
+        assertEquals(3600000, lastHour.getFrom());
+        assertEquals(7200000, lastHour.getTo());
+        assertEquals(3600, lastHour.getStep());
+
+        HistoryQuery query = HistoryQuery.of("1970-01-01T00:00:01Z", "5000", "1", 0);
+        assertEquals(1000, query.getFrom());
+        assertEquals(5000, query.getTo());
+        assertEquals(4, query.getStep());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testQueryStartsAfterEnd() {
+        HistoryQuery.of("2000", "1000", null, 0);
+    }
+
+    private static class TestReading extends TelemetryReading<TestReading> {
+        private double value;
+
+        @Override
+        protected void copyFrom(TestReading other) {
+            value = other.value;
+        }
+
+        @Override
+        protected void readField(String name, JsonParser parser) {
+        }
+
+        @Override
+        protected boolean sameAs(TestReading other) {
+            return value == other.value;
+        }
+
+        @Override
+        public String[] getSeries() {
+            return new String[]{"value"};
+        }
+
+        @Override
+        public void sample(double[] values) {
+            values[0] = value;
+        }
+    }
+}
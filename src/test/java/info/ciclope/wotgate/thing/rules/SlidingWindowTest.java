@@ -0,0 +1,81 @@
+package info.ciclope.wotgate.thing.rules;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SlidingWindowTest {
+
+    @Test
+    public void testEmptyWindow() {
+        SlidingWindow window = new SlidingWindow(1000);
+
+        assertEquals(0, window.size());
+        assertTrue(Double.isNaN(window.getAverage()));
+        assertTrue(Double.isNaN(window.getMaximum()));
+        assertTrue(Double.isNaN(window.getRate()));
+    }
+
+    @Test
+    public void testOldSamplesExpired() {
+        SlidingWindow window = new SlidingWindow(1000);
+        window.add(0, 10);
+        window.add(500, 2);
+        window.add(1000, 6);
+
+        // The sample at 0 is out of the window ending at 1000
+        assertEquals(2, window.size());
+        assertEquals(4, window.getAverage(), 0);
+        assertEquals(2, window.getMinimum(), 0);
+        assertEquals(6, window.getMaximum(), 0);
+        assertEquals(8, window.getRate(), 0);
+
+        window.expire(1600);
+        assertEquals(1, window.size());
+        assertEquals(6, window.getLast(), 0);
+        assertTrue(Double.isNaN(window.getRate()));
+    }
+
+    @Test
+    public void testUnknownValuesIgnored() {
+        SlidingWindow window = new SlidingWindow(1000);
+        window.add(0, 1);
+        window.add(100, Double.NaN);
+
+        assertEquals(1, window.size());
+        assertEquals(1, window.getMaximum(), 0);
+    }
+
+    @Test
+    public void testAggregatesMatchRecomputation() {
+        Random random = new Random(42);
+        SlidingWindow window = new SlidingWindow(5000);
+        long[] timestamps = new long[2000];
+        double[] values = new double[2000];
+        long timestamp = 0;
+        for (int i = 0; i < values.length; i++) {
+            // Bursts and gaps make the window grow and shrink
+            timestamp += random.nextInt(10) == 0 ? random.nextInt(4000) : random.nextInt(50);
+            timestamps[i] = timestamp;
+            values[i] = random.nextGaussian() * 10;
+            window.add(timestamp, values[i]);
+
+            double sum = 0;
+            double minimum = Double.POSITIVE_INFINITY;
+            double maximum = Double.NEGATIVE_INFINITY;
+            int size = 0;
+            for (int j = i; j >= 0 && timestamps[j] > timestamp - 5000; j--) {
+                sum += values[j];
+                minimum = Math.min(minimum, values[j]);
+                maximum = Math.max(maximum, values[j]);
+                size++;
+            }
+            assertEquals(size, window.size());
+            assertEquals(sum / size, window.getAverage(), 1e-9);
+            assertEquals(minimum, window.getMinimum(), 0);
+            assertEquals(maximum, window.getMaximum(), 0);
+        }
+    }
+}
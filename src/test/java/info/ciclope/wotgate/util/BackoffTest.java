@@ -0,0 +1,42 @@
+package info.ciclope.wotgate.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BackoffTest {
+
+    @Test
+    public void testDelaysDoubleWithinJitter() {
+        Backoff backoff = new Backoff(1000, 60000);
+
+        for (int attempt = 0; attempt < 6; attempt++) {
+            long maxDelay = 1000L << attempt;
+            long delay = backoff.nextDelay();
+            assertTrue(delay >= maxDelay / 2);
+            assertTrue(delay <= maxDelay);
+        }
+        assertEquals(6, backoff.getAttempts());
+    }
+
+    @Test
+    public void testDelaysAreCapped() {
+        Backoff backoff = new Backoff(1000, 5000);
+
+        for (int attempt = 0; attempt < 100; attempt++) {
+            assertTrue(backoff.nextDelay() <= 5000);
+        }
+        assertTrue(backoff.nextDelay() >= 2500);
+    }
+
+    @Test
+    public void testReset() {
+        Backoff backoff = new Backoff(1000, 60000);
+        backoff.nextDelay();
+        backoff.nextDelay();
+        backoff.reset();
+
+        assertEquals(0, backoff.getAttempts());
+        assertTrue(backoff.nextDelay() <= 1000);
+    }
+}
@@ -0,0 +1,42 @@
+package info.ciclope.wotgate.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBurstUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(3, 1, 0);
+
+        assertTrue(bucket.tryConsume(0));
+        assertTrue(bucket.tryConsume(0));
+        assertTrue(bucket.tryConsume(0));
+        assertFalse(bucket.tryConsume(0));
+    }
+
+    @Test
+    public void testRefill() {
+        TokenBucket bucket = new TokenBucket(2, 2, 0);
+        bucket.tryConsume(0);
+        bucket.tryConsume(0);
+
+        assertEquals(SECOND / 2, bucket.getWaitTime(0));
+        assertFalse(bucket.tryConsume(SECOND / 4));
+        assertTrue(bucket.tryConsume(SECOND / 2));
+        assertFalse(bucket.isFull(SECOND / 2));
+        assertTrue(bucket.isFull(10 * SECOND));
+    }
+
+    @Test
+    public void testRefillNeverExceedsCapacity() {
+        TokenBucket bucket = new TokenBucket(1, 100, 0);
+
+        assertTrue(bucket.tryConsume(SECOND));
+        assertFalse(bucket.tryConsume(SECOND));
+    }
+}